@@ -0,0 +1,94 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extracting a review from captured Trustpilot pages. The page can be padded after the business unit element,
+ * to see how both extraction modes and the structured data scan scale with the size of the page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewParsingBenchmark {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final String PADDING = "<div class=\"review-card\"><p>Great service, would buy again.</p></div>\n";
+
+    @Param({"successfulWithValues", "successfulWithoutValues"})
+    private String page;
+
+    @Param({"0", "1024"})
+    private int paddingKb;
+
+    private ReviewScraper reviewScraper;
+    private String html;
+    private byte[] htmlBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reviewScraper = new ReviewScraper(null, null, null, null, null, new SimpleMeterRegistry());
+
+        String captured;
+        String path = "/mockwebserver/" + page + ".html";
+        try (InputStream pageStream = requireNonNull(getClass().getResourceAsStream(path))) {
+            captured = new String(pageStream.readAllBytes(), UTF_8);
+        }
+        int bodyEnd = captured.lastIndexOf("</body>");
+        html = captured.substring(0, bodyEnd) + PADDING.repeat(paddingKb * 1024 / PADDING.length())
+            + captured.substring(bodyEnd);
+        htmlBytes = html.getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public ReviewDto parseDocument() {
+        return reviewScraper.parseReviewDocument(html);
+    }
+
+    @Benchmark
+    public ReviewDto extractFromStream() {
+        StreamingReviewExtractor extractor = new StreamingReviewExtractor("business-unit-title");
+        for (int offset = 0; offset < htmlBytes.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, htmlBytes.length - offset);
+            if (extractor.feed(ByteBuffer.wrap(htmlBytes, offset, length))) {
+                break;
+            }
+        }
+        return reviewScraper.extractReview(extractor);
+    }
+
+    @Benchmark
+    public Object extractStructuredData() {
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor("gullwingmotor.com");
+        for (int offset = 0; offset < htmlBytes.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, htmlBytes.length - offset);
+            if (extractor.feed(ByteBuffer.wrap(htmlBytes, offset, length))) {
+                break;
+            }
+        }
+        return extractor.extract();
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning the texts of the business unit children into the reviews count and the rating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewTextBenchmark {
+
+    private final ReviewScraper reviewScraper =
+        new ReviewScraper(null, null, null, null, null, new SimpleMeterRegistry());
+
+    private String reviewsText = "1,274 total";
+    private String ratingText = "4.9";
+
+    @Benchmark
+    public Optional<Integer> getReviewsCount() {
+        return reviewScraper.getReviewsCount(reviewsText);
+    }
+
+    @Benchmark
+    public Optional<Double> getRating() {
+        return reviewScraper.getRating(ratingText);
+    }
+
+}
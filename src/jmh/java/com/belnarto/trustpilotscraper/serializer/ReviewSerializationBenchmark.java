@@ -0,0 +1,88 @@
+package com.belnarto.trustpilotscraper.serializer;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.config.ObjectMapperPostProcessor;
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Serializing reviews for responses and for Redis, with the object mapper configured the same way as in
+ * the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Jackson2JsonRedisSerializer<CachedReview> redisSerializer;
+    private CachedReviewRedisSerializer binaryRedisSerializer;
+
+    private ReviewDto review;
+    private CachedReview cachedReview;
+    private byte[] cachedReviewBytes;
+    private byte[] cachedReviewBinaryBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper applicationObjectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule())
+            .build();
+        objectMapper = (ObjectMapper) new ObjectMapperPostProcessor()
+            .postProcessAfterInitialization(applicationObjectMapper, "objectMapper");
+        redisSerializer = new Jackson2JsonRedisSerializer<>(CachedReview.class);
+        redisSerializer.setObjectMapper(objectMapper);
+
+        review = new ReviewDto(1274, 4.9);
+        cachedReview = CachedReview.of(review, System.currentTimeMillis(), objectMapper.writeValueAsBytes(review));
+        cachedReviewBytes = redisSerializer.serialize(cachedReview);
+
+        binaryRedisSerializer = new CachedReviewRedisSerializer(RedisValueFormat.BINARY, redisSerializer);
+        cachedReviewBinaryBytes = binaryRedisSerializer.serialize(cachedReview);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(review);
+    }
+
+    @Benchmark
+    public byte[] serializeForRedis() {
+        return redisSerializer.serialize(cachedReview);
+    }
+
+    @Benchmark
+    public CachedReview deserializeFromRedis() {
+        return redisSerializer.deserialize(cachedReviewBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeForRedisBinary() {
+        return binaryRedisSerializer.serialize(cachedReview);
+    }
+
+    @Benchmark
+    public CachedReview deserializeFromRedisBinary() {
+        return binaryRedisSerializer.deserialize(cachedReviewBinaryBytes);
+    }
+
+}
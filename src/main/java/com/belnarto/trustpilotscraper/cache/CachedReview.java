@@ -0,0 +1,70 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.belnarto.trustpilotscraper.scraper.UpstreamValidators;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Review as it is stored in the caches, together with the time it was scraped at, the response body
+ * rendered at that time and the validators of the page it was scraped from. Entries written before the timestamp
+ * was introduced are read with {@code cachedAt} of 0 and therefore treated as stale, entries written before the
+ * response or the validators were introduced have none.
+ */
+@Value
+@AllArgsConstructor(onConstructor_ = @JsonCreator)
+public class CachedReview {
+
+    int reviewsCount;
+
+    Double rating;
+
+    long cachedAt;
+
+    byte[] response;
+
+    String etag;
+
+    String lastModified;
+
+    public CachedReview(int reviewsCount, Double rating, long cachedAt) {
+        this(reviewsCount, rating, cachedAt, null);
+    }
+
+    public CachedReview(int reviewsCount, Double rating, long cachedAt, byte[] response) {
+        this(reviewsCount, rating, cachedAt, response, null, null);
+    }
+
+    public static CachedReview of(ReviewDto review, long cachedAt, byte[] response) {
+        return of(review, cachedAt, response, UpstreamValidators.NONE);
+    }
+
+    public static CachedReview of(ReviewDto review, long cachedAt, byte[] response, UpstreamValidators validators) {
+        return new CachedReview(review.getReviewsCount(), review.getRating(), cachedAt, response,
+            validators.getEtag(), validators.getLastModified());
+    }
+
+    /**
+     * Returns the same review as if scraped again at the given time, after Trustpilot confirmed it is unchanged.
+     */
+    public CachedReview revalidated(long cachedAt, UpstreamValidators validators) {
+        return new CachedReview(reviewsCount, rating, cachedAt, response,
+            validators.getEtag(), validators.getLastModified());
+    }
+
+    @JsonIgnore
+    public UpstreamValidators getValidators() {
+        return new UpstreamValidators(etag, lastModified);
+    }
+
+    public ReviewDto toReviewDto() {
+        return new ReviewDto(reviewsCount, rating);
+    }
+
+    public long ageMillis(long now) {
+        return now - cachedAt;
+    }
+
+}
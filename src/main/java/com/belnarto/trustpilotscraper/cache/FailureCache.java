@@ -0,0 +1,60 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Negative cache for domains whose scraping recently failed, stored in Redis next to the reviews
+ * under its own key prefix, so that repeated requests for them don't hit Trustpilot again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FailureCache {
+
+    private static final String KEY_PREFIX = "failure:";
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Value("${trustpilot.failure-cache.not-found-ttl-sec}")
+    private long notFoundTtlSec;
+
+    @Value("${trustpilot.failure-cache.parsing-failed-ttl-sec}")
+    private long parsingFailedTtlSec;
+
+    @Value("${trustpilot.failure-cache.timeout-ttl-sec}")
+    private long timeoutTtlSec;
+
+    public Mono<FailureType> get(String domain) {
+        return reactiveStringRedisTemplate.opsForValue().get(KEY_PREFIX + domain)
+            .map(FailureType::valueOf);
+    }
+
+    public Mono<Boolean> put(String domain, Throwable e) {
+        return FailureType.of(e)
+            .filter(type -> ttlSec(type) > 0)
+            .map(type -> {
+                log.debug("Caching " + type + " failure for domain: " + domain);
+                return reactiveStringRedisTemplate.opsForValue()
+                    .set(KEY_PREFIX + domain, type.name(), Duration.ofSeconds(ttlSec(type)));
+            })
+            .orElse(Mono.just(false));
+    }
+
+    private long ttlSec(FailureType type) {
+        switch (type) {
+            case NOT_FOUND:
+                return notFoundTtlSec;
+            case PARSING_FAILED:
+                return parsingFailedTtlSec;
+            default:
+                return timeoutTtlSec;
+        }
+    }
+
+}
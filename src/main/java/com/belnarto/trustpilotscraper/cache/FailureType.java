@@ -0,0 +1,38 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ReviewParsingException;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+public enum FailureType {
+
+    NOT_FOUND,
+    PARSING_FAILED,
+    TIMEOUT;
+
+    public static Optional<FailureType> of(Throwable e) {
+        if (e instanceof ReviewNotFoundException) {
+            return Optional.of(NOT_FOUND);
+        }
+        if (e instanceof ReviewParsingException) {
+            return Optional.of(PARSING_FAILED);
+        }
+        if (e instanceof TimeoutException) {
+            return Optional.of(TIMEOUT);
+        }
+        return Optional.empty();
+    }
+
+    public Throwable toException(String domain) {
+        switch (this) {
+            case NOT_FOUND:
+                return new ReviewNotFoundException("Review for domain: " + domain + " was not found");
+            case PARSING_FAILED:
+                return new ReviewParsingException();
+            default:
+                return new TimeoutException("Review for domain: " + domain + " timed out recently");
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Bounded in-heap cache of reviews in front of Redis. Every instance announces the domains it writes to
+ * Redis on a pub/sub channel, and the other instances drop their local copy of those domains.
+ */
+@Component
+@Slf4j
+public class LocalReviewCache {
+
+    private static final String INVALIDATION_CHANNEL = "review-invalidation";
+    private static final String MESSAGE_SEPARATOR = " ";
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final Cache<String, CachedReview> cache;
+    private final Policy.VarExpiration<String, CachedReview> expiration;
+    private final Duration ttl;
+
+    private Disposable invalidationSubscription;
+
+    public LocalReviewCache(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+        @Value("${trustpilot.local-cache.max-size}") long maxSize,
+        @Value("${trustpilot.local-cache.ttl-sec}") long ttlSec) {
+
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSec);
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfter(new Expiry<String, CachedReview>() {
+                @Override
+                public long expireAfterCreate(String key, CachedReview value, long currentTime) {
+                    return ttl.toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CachedReview value, long currentTime, long currentDuration) {
+                    return ttl.toNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, CachedReview value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        this.expiration = cache.policy().expireVariably().orElseThrow();
+    }
+
+    @PostConstruct
+    void subscribeToInvalidations() {
+        invalidationSubscription = Flux.defer(() -> reactiveStringRedisTemplate.listenToChannel(INVALIDATION_CHANNEL))
+            .map(ReactiveSubscription.Message::getMessage)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(signal -> log.debug("Resubscribing to review invalidations", signal.failure())))
+            .subscribe(this::onInvalidation);
+    }
+
+    @PreDestroy
+    void unsubscribeFromInvalidations() {
+        invalidationSubscription.dispose();
+    }
+
+    public CachedReview get(String domain) {
+        return cache.getIfPresent(domain);
+    }
+
+    /**
+     * Caches the review locally for the configured local TTL, or less if it expires in Redis before that.
+     */
+    public void put(String domain, CachedReview cachedReview, Duration remainingTtl) {
+        expiration.put(domain, cachedReview, remainingTtl.compareTo(ttl) < 0 ? remainingTtl : ttl);
+    }
+
+    public void invalidate(String domain) {
+        cache.invalidate(domain);
+    }
+
+    /**
+     * Tells the other instances that a fresh value was written to Redis for the domain.
+     */
+    public Mono<Long> publishInvalidation(String domain) {
+        return publishInvalidation(List.of(domain));
+    }
+
+    /**
+     * Tells the other instances that fresh values were written to Redis for the domains, in a single message.
+     */
+    public Mono<Long> publishInvalidation(Collection<String> domains) {
+        String message = instanceId + MESSAGE_SEPARATOR + String.join(MESSAGE_SEPARATOR, domains);
+        return reactiveStringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private void onInvalidation(String message) {
+        int separatorIndex = message.indexOf(MESSAGE_SEPARATOR);
+        if (separatorIndex < 0 || message.startsWith(instanceId + MESSAGE_SEPARATOR)) {
+            return;
+        }
+        for (String domain : message.substring(separatorIndex + 1).split(MESSAGE_SEPARATOR)) {
+            log.debug("Invalidating local review for domain: " + domain);
+            cache.invalidate(domain);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Records the latency of one Redis operation on cached reviews by the signal it ended with. The timers are
+ * registered once, as the operations are on the hot path.
+ */
+public class RedisOperationTimer {
+
+    private static final List<SignalType> SIGNALS = List.of(SignalType.ON_COMPLETE, SignalType.ON_ERROR,
+        SignalType.CANCEL);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<SignalType, Timer> timers = new EnumMap<>(SignalType.class);
+
+    public RedisOperationTimer(MeterRegistry meterRegistry, String operation) {
+        this.meterRegistry = meterRegistry;
+        for (SignalType signal : SIGNALS) {
+            timers.put(signal, Timer.builder("trustpilot.redis")
+                .description("Latency of Redis operations on cached reviews")
+                .tags("operation", operation, "signal", signal.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+    }
+
+    public <T> Mono<T> time(Mono<T> redisCall) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return redisCall.doFinally(signal -> sample.stop(timers.get(signal)));
+        });
+    }
+
+}
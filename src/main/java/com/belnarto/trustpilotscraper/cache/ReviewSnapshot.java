@@ -0,0 +1,106 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.stereotype.Component;
+
+/**
+ * On-disk copy of the reviews of the hot domains, used to warm the caches up after a restart
+ * without asking Trustpilot again. The file holds a header followed by domain and review pairs, the reviews
+ * written by the same serializer as in Redis. It is replaced atomically, so a crash while writing never
+ * leaves a truncated snapshot behind. Blocking, not to be called on event loop threads.
+ */
+@Component
+@Slf4j
+public class ReviewSnapshot {
+
+    private static final int HEADER = 0x54505331;
+    private static final int MAX_REVIEW_LENGTH = 1024 * 1024;
+
+    private final SerializationPair<CachedReview> serializationPair;
+    private final Path path;
+
+    public ReviewSnapshot(ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate,
+        @Value("${trustpilot.warm-up.snapshot-file}") String snapshotFile) {
+
+        this.serializationPair = reactiveRedisTemplate.getSerializationContext().getValueSerializationPair();
+        this.path = hasText(snapshotFile) ? Path.of(snapshotFile) : null;
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    public void write(Map<String, CachedReview> reviews) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(HEADER);
+                for (Map.Entry<String, CachedReview> entry : reviews.entrySet()) {
+                    ByteBuffer review = serializationPair.write(entry.getValue());
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(review.remaining());
+                    while (review.hasRemaining()) {
+                        out.write(review.get());
+                    }
+                }
+            }
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        log.debug("Wrote snapshot of " + reviews.size() + " reviews to " + path);
+    }
+
+    /**
+     * Reads the reviews of the last snapshot, or nothing if there is none yet. A damaged tail is skipped.
+     */
+    public Map<String, CachedReview> read() throws IOException {
+        Map<String, CachedReview> reviews = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return reviews;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != HEADER) {
+                log.warn("Ignoring snapshot of unknown format: " + path);
+                return reviews;
+            }
+            while (true) {
+                String domain = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_REVIEW_LENGTH) {
+                    throw new IllegalStateException("Invalid review length: " + length);
+                }
+                byte[] review = new byte[length];
+                in.readFully(review);
+                reviews.put(domain, serializationPair.read(ByteBuffer.wrap(review)));
+            }
+        } catch (EOFException e) {
+            return reviews;
+        } catch (RuntimeException e) {
+            log.warn("Snapshot is damaged, using the " + reviews.size() + " reviews read before: " + path, e);
+            return reviews;
+        }
+    }
+
+}
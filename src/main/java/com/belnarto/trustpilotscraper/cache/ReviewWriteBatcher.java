@@ -0,0 +1,148 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Writes scraped reviews to Redis in batches rather than one by one. The writes of a batch are sent back to back
+ * without waiting for each other's replies, so they are pipelined on the connection, and the other instances
+ * learn about all of them from a single invalidation message. A batch is sent once it is full or its maximum
+ * delay has passed, and only after the previous one was written, so the writes of a domain stay in order; only
+ * the last write of a domain within a batch is sent at all. At most a fixed number of writes is pending, further
+ * ones are dropped as if they had failed while Redis can not keep up.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReviewWriteBatcher {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate;
+    private final LocalReviewCache localReviewCache;
+    private final MeterRegistry meterRegistry;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    @Value("${trustpilot.redis.write-batch.max-size}")
+    private int maxSize;
+
+    @Value("${trustpilot.redis.write-batch.max-delay-ms}")
+    private long maxDelayMs;
+
+    @Value("${trustpilot.redis.write-batch.max-pending}")
+    private int maxPending;
+
+    private FluxSink<Write> sink;
+    private DistributionSummary batchSizeSummary;
+    private RedisOperationTimer batchSetTimer;
+
+    @PostConstruct
+    void start() {
+        batchSizeSummary = DistributionSummary.builder("trustpilot.redis.write.batch.size")
+            .description("Number of reviews written to Redis at once")
+            .register(meterRegistry);
+        batchSetTimer = new RedisOperationTimer(meterRegistry, "batch-set");
+
+        Flux.<Write>create(fluxSink -> sink = fluxSink)
+            .bufferTimeout(maxSize, Duration.ofMillis(maxDelayMs))
+            // bounded by the pending writes, as every batch holds at least one of them
+            .onBackpressureBuffer()
+            .concatMap(this::writeBatch)
+            .doFinally(signal -> stopped.countDown())
+            .subscribe();
+    }
+
+    /**
+     * Sends the writes still pending before the connection to Redis is closed.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        sink.complete();
+        if (!stopped.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Pending reviews were not written to Redis within " + SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    /**
+     * Queues the write, which happens whether or not the result is subscribed to.
+     *
+     * @return completes once the batch of the write has been sent, even if that failed, or right away if the write
+     *     was dropped
+     */
+    public Mono<Void> write(String domain, CachedReview cachedReview, Duration ttl) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+            log.debug("Too many reviews pending to be written to Redis, dropping the one of domain: " + domain);
+            return Mono.empty();
+        }
+        Write write = new Write(domain, cachedReview, ttl);
+        sink.next(write);
+        return write.written.asMono();
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private Mono<Void> writeBatch(List<Write> batch) {
+        Map<String, Write> latestWrites = new LinkedHashMap<>();
+        batch.forEach(write -> latestWrites.put(write.getDomain(), write));
+
+        return Mono.defer(() -> {
+                batchSizeSummary.record(latestWrites.size());
+                return batchSetTimer.time(Flux.fromIterable(latestWrites.values())
+                    .flatMap(write -> reactiveRedisTemplate.opsForValue()
+                        .set(write.getDomain(), write.getCachedReview(), write.getTtl()))
+                    .then(localReviewCache.publishInvalidation(latestWrites.keySet())));
+            })
+            .onErrorResume(e -> {
+                log.debug("Could not write " + latestWrites.size() + " reviews to Redis", e);
+                return Mono.empty();
+            })
+            .doFinally(signal -> {
+                pendingCount.addAndGet(-batch.size());
+                batch.forEach(write -> write.written.tryEmitEmpty());
+            })
+            .then();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Write {
+
+        private final String domain;
+        private final CachedReview cachedReview;
+        private final Duration ttl;
+        private final Sinks.Empty<Void> written = Sinks.empty();
+
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.belnarto.trustpilotscraper.config;
+
+import com.belnarto.trustpilotscraper.cache.CacheTierStats;
+import com.belnarto.trustpilotscraper.cache.LocalReviewCache;
+import com.belnarto.trustpilotscraper.cache.ReviewWriteBatcher;
+import com.belnarto.trustpilotscraper.scraper.HedgingPolicy;
+import com.belnarto.trustpilotscraper.scraper.ParseScheduler;
+import com.belnarto.trustpilotscraper.scraper.ReviewScraper;
+import com.belnarto.trustpilotscraper.scraper.UpstreamRateLimiter;
+import com.belnarto.trustpilotscraper.service.PopularityRefresher;
+import com.belnarto.trustpilotscraper.service.ReviewService;
+import com.belnarto.trustpilotscraper.service.ScrapAdmission;
+import com.belnarto.trustpilotscraper.service.ScrapLease;
+import com.belnarto.trustpilotscraper.service.SingleFlight;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Publishes the statistics collected by the components themselves. None of the meters is tagged by domain,
+ * to keep the number of time series bounded. They are bound once the application has started rather than
+ * through MeterBinder beans, as those would make the meter registry depend on the Redis backed components.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class MetricsConfiguration {
+
+    private final MeterRegistry registry;
+    private final LocalReviewCache localReviewCache;
+    private final ReviewWriteBatcher reviewWriteBatcher;
+    private final ReviewService reviewService;
+    private final UpstreamRateLimiter upstreamRateLimiter;
+    private final HedgingPolicy hedgingPolicy;
+    private final ReviewScraper reviewScraper;
+    private final ParseScheduler parseScheduler;
+    private final CircuitBreaker scraperCircuitBreaker;
+    private final PopularityRefresher popularityRefresher;
+    private final ScrapLease scrapLease;
+    private final ScrapAdmission scrapAdmission;
+
+    @EventListener(ApplicationStartedEvent.class)
+    void bindMetrics() {
+        bindCacheMetrics();
+        bindAdmissionMetrics();
+        bindUpstreamMetrics();
+    }
+
+    private void bindCacheMetrics() {
+        FunctionCounter.builder("trustpilot.cache.requests", localReviewCache, cache -> cache.stats().hitCount())
+            .tags("tier", "local", "result", "hit")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.cache.requests", localReviewCache, cache -> cache.stats().missCount())
+            .tags("tier", "local", "result", "miss")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.cache.evictions", localReviewCache,
+                cache -> cache.stats().evictionCount())
+            .tags("tier", "local")
+            .register(registry);
+        Gauge.builder("trustpilot.cache.size", localReviewCache, LocalReviewCache::size)
+            .tags("tier", "local")
+            .register(registry);
+
+        CacheTierStats redisStats = reviewService.getRedisStats();
+        FunctionCounter.builder("trustpilot.cache.requests", redisStats, CacheTierStats::getHitCount)
+            .tags("tier", "redis", "result", "hit")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.cache.requests", redisStats, CacheTierStats::getMissCount)
+            .tags("tier", "redis", "result", "miss")
+            .register(registry);
+
+        Gauge.builder("trustpilot.redis.write.pending", reviewWriteBatcher, ReviewWriteBatcher::getPendingCount)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.redis.write.dropped", reviewWriteBatcher,
+                ReviewWriteBatcher::getDroppedCount)
+            .register(registry);
+
+        SingleFlight<?, ?> scrapFlight = reviewService.getScrapFlight();
+        Gauge.builder("trustpilot.scrap.in.flight", scrapFlight, SingleFlight::getInFlightCount)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.scrap.calls", scrapFlight, SingleFlight::getOriginatedCount)
+            .tags("result", "originated")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.scrap.calls", scrapFlight, SingleFlight::getCoalescedCount)
+            .tags("result", "coalesced")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.scrap.leases", scrapLease, ScrapLease::getAcquiredCount)
+            .tags("result", "acquired")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.scrap.leases", scrapLease, ScrapLease::getWaitedCount)
+            .tags("result", "waited")
+            .register(registry);
+
+        FunctionCounter.builder("trustpilot.popularity.refreshes", popularityRefresher,
+                PopularityRefresher::getRefreshedCount)
+            .tags("result", "refreshed")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.popularity.refreshes", popularityRefresher,
+                PopularityRefresher::getFailedCount)
+            .tags("result", "failed")
+            .register(registry);
+    }
+
+    private void bindAdmissionMetrics() {
+        FunctionCounter.builder("trustpilot.admission.requests", scrapAdmission, ScrapAdmission::getAcceptedCount)
+            .tags("result", "accepted")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.admission.requests", scrapAdmission, ScrapAdmission::getQueuedCount)
+            .tags("result", "queued")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.admission.requests", scrapAdmission, ScrapAdmission::getShedCount)
+            .tags("result", "shed")
+            .register(registry);
+        Gauge.builder("trustpilot.admission.limit", scrapAdmission, ScrapAdmission::getLimit)
+            .register(registry);
+        Gauge.builder("trustpilot.admission.in.flight", scrapAdmission, ScrapAdmission::getInFlight)
+            .register(registry);
+        Gauge.builder("trustpilot.admission.queue.size", scrapAdmission, ScrapAdmission::getQueueSize)
+            .register(registry);
+    }
+
+    private void bindUpstreamMetrics() {
+        Gauge.builder("trustpilot.rate.limit.queue.size", upstreamRateLimiter, UpstreamRateLimiter::getQueueSize)
+            .register(registry);
+        Gauge.builder("trustpilot.rate.limit.in.flight", upstreamRateLimiter, UpstreamRateLimiter::getInFlight)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.rate.limit.permits", upstreamRateLimiter,
+                UpstreamRateLimiter::getAcquiredCount)
+            .tags("result", "acquired")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.rate.limit.permits", upstreamRateLimiter,
+                UpstreamRateLimiter::getRejectedCount)
+            .tags("result", "rejected")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.rate.limit.wait", upstreamRateLimiter,
+                limiter -> limiter.getTotalWaitNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+            .baseUnit("seconds")
+            .register(registry);
+
+        FunctionCounter.builder("trustpilot.upstream.attempts", hedgingPolicy, HedgingPolicy::getAttemptCount)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.hedges", hedgingPolicy, HedgingPolicy::getHedgeCount)
+            .tags("result", "launched")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.hedges", hedgingPolicy, HedgingPolicy::getHedgeWinCount)
+            .tags("result", "won")
+            .register(registry);
+        Gauge.builder("trustpilot.upstream.hedge.delay", hedgingPolicy,
+                policy -> policy.getDelay().toNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+            .baseUnit("seconds")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.retries", reviewScraper, ReviewScraper::getRetryCount)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.pages", reviewScraper, ReviewScraper::getModifiedCount)
+            .tags("result", "modified")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.pages", reviewScraper, ReviewScraper::getNotModifiedCount)
+            .tags("result", "not_modified")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.bytes", reviewScraper, ReviewScraper::getDownloadedBytes)
+            .tags("result", "downloaded")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.upstream.bytes", reviewScraper, ReviewScraper::getSavedBytes)
+            .tags("result", "saved")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.parse.time", reviewScraper,
+                scraper -> scraper.getParseNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+            .tags("result", "spent")
+            .baseUnit("seconds")
+            .register(registry);
+        FunctionCounter.builder("trustpilot.parse.time", reviewScraper,
+                scraper -> scraper.getSavedParseNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+            .tags("result", "saved")
+            .baseUnit("seconds")
+            .register(registry);
+        Gauge.builder("trustpilot.parse.queue.size", parseScheduler, ParseScheduler::getQueueSize)
+            .register(registry);
+        Gauge.builder("trustpilot.parse.active", parseScheduler, ParseScheduler::getActiveCount)
+            .register(registry);
+        FunctionCounter.builder("trustpilot.parse.rejected", parseScheduler, ParseScheduler::getRejectedCount)
+            .register(registry);
+
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("trustpilot.circuit.breaker.state", scraperCircuitBreaker,
+                    circuitBreaker -> circuitBreaker.getState() == state ? 1 : 0)
+                .tags("state", state.name().toLowerCase())
+                .register(registry);
+        }
+        Gauge.builder("trustpilot.circuit.breaker.failure.rate", scraperCircuitBreaker,
+                circuitBreaker -> circuitBreaker.getMetrics().getFailureRate())
+            .register(registry);
+    }
+
+}
@@ -1,7 +1,14 @@
 package com.belnarto.trustpilotscraper.config;
 
-import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import static org.springframework.util.StringUtils.hasText;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.serializer.CachedReviewRedisSerializer;
+import com.belnarto.trustpilotscraper.serializer.RedisValueFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.ReadFrom;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
@@ -10,19 +17,42 @@ import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+/**
+ * Works against a single node, a master with replicas, Sentinel or a Cluster, as configured by the
+ * {@code spring.redis} properties. Cached reviews tolerate the replication lag, so unless configured otherwise
+ * they are read from the replicas, which Lettuce discovers from the master or the cluster topology, and writes
+ * keep going to the master.
+ */
 @Configuration
 public class RedisConfiguration {
 
+    @Value("${trustpilot.redis-value-format}")
+    private RedisValueFormat redisValueFormat;
+
+    @Value("${trustpilot.redis.read-from}")
+    private String readFrom;
+
+    @Bean
+    LettuceClientConfigurationBuilderCustomizer readFromCustomizer() {
+        return builder -> {
+            if (hasText(readFrom)) {
+                builder.readFrom(ReadFrom.valueOf(readFrom));
+            }
+        };
+    }
+
     @Bean
-    ReactiveRedisTemplate<String, ReviewDto> reactiveRedisTemplate(ReactiveRedisConnectionFactory factory,
+    ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate(ReactiveRedisConnectionFactory factory,
         ObjectMapper objectMapper) {
 
         StringRedisSerializer keySerializer = new StringRedisSerializer();
-        RedisSerializationContext.RedisSerializationContextBuilder<String, ReviewDto> builder =
+        RedisSerializationContext.RedisSerializationContextBuilder<String, CachedReview> builder =
             RedisSerializationContext.newSerializationContext(keySerializer);
 
-        Jackson2JsonRedisSerializer<ReviewDto> valueSerializer = new Jackson2JsonRedisSerializer<>(ReviewDto.class);
-        valueSerializer.setObjectMapper(objectMapper);
+        Jackson2JsonRedisSerializer<CachedReview> jsonSerializer =
+            new Jackson2JsonRedisSerializer<>(CachedReview.class);
+        jsonSerializer.setObjectMapper(objectMapper);
+        CachedReviewRedisSerializer valueSerializer = new CachedReviewRedisSerializer(redisValueFormat, jsonSerializer);
 
         return new ReactiveRedisTemplate<>(factory, builder.value(valueSerializer).build());
     }
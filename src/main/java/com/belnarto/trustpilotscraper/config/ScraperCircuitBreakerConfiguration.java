@@ -0,0 +1,64 @@
+package com.belnarto.trustpilotscraper.config;
+
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ReviewParsingException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Circuit breaker around scraping Trustpilot. Not found and parsing errors mean Trustpilot is up and answering,
+ * and rejections by our own rate limiter say nothing about it, so neither of them counts as a failure.
+ */
+@Configuration
+@Slf4j
+public class ScraperCircuitBreakerConfiguration {
+
+    @Value("${trustpilot.circuit-breaker.sliding-window-size}")
+    private int slidingWindowSize;
+
+    @Value("${trustpilot.circuit-breaker.minimum-number-of-calls}")
+    private int minimumNumberOfCalls;
+
+    @Value("${trustpilot.circuit-breaker.failure-rate-threshold}")
+    private float failureRateThreshold;
+
+    @Value("${trustpilot.circuit-breaker.slow-call-duration-ms}")
+    private long slowCallDurationMs;
+
+    @Value("${trustpilot.circuit-breaker.slow-call-rate-threshold}")
+    private float slowCallRateThreshold;
+
+    @Value("${trustpilot.circuit-breaker.wait-in-open-state-ms}")
+    private long waitInOpenStateMs;
+
+    @Value("${trustpilot.circuit-breaker.permitted-calls-in-half-open-state}")
+    private int permittedCallsInHalfOpenState;
+
+    @Bean
+    CircuitBreaker scraperCircuitBreaker() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .slidingWindowSize(slidingWindowSize)
+            .minimumNumberOfCalls(minimumNumberOfCalls)
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallDurationThreshold(Duration.ofMillis(slowCallDurationMs))
+            .slowCallRateThreshold(slowCallRateThreshold)
+            .waitDurationInOpenState(Duration.ofMillis(waitInOpenStateMs))
+            .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            .ignoreExceptions(ReviewNotFoundException.class, ReviewParsingException.class,
+                ScrapingUnavailableException.class)
+            .build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("trustpilot", config);
+        circuitBreaker.getEventPublisher()
+            .onStateTransition(event -> log.warn("Trustpilot circuit breaker: " + event.getStateTransition()));
+        return circuitBreaker;
+    }
+
+}
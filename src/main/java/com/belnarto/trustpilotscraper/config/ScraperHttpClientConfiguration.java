@@ -0,0 +1,92 @@
+package com.belnarto.trustpilotscraper.config;
+
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Dedicated HTTP client for scraping Trustpilot, so its connection pool can be sized for our load
+ * independently of any other client in the application.
+ */
+@Configuration
+public class ScraperHttpClientConfiguration {
+
+    @Value("${trustpilot.base-url}")
+    private String baseUrl;
+
+    @Value("${trustpilot.http-client.max-connections}")
+    private int maxConnections;
+
+    @Value("${trustpilot.http-client.pending-acquire-max-count}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${trustpilot.http-client.pending-acquire-timeout-ms}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${trustpilot.http-client.max-idle-time-sec}")
+    private long maxIdleTimeSec;
+
+    @Value("${trustpilot.http-client.max-life-time-sec}")
+    private long maxLifeTimeSec;
+
+    @Value("${trustpilot.http-client.evict-in-background-sec}")
+    private long evictInBackgroundSec;
+
+    @Value("${trustpilot.http-client.connect-timeout-ms}")
+    private int connectTimeoutMs;
+
+    @Value("${trustpilot.http-client.keep-alive}")
+    private boolean keepAlive;
+
+    @Value("${trustpilot.http-client.tcp-keep-alive}")
+    private boolean tcpKeepAlive;
+
+    @Value("${trustpilot.http-client.compress}")
+    private boolean compress;
+
+    @Value("${trustpilot.http-client.http2}")
+    private boolean http2;
+
+    @Value("${trustpilot.http-client.metrics-enabled}")
+    private boolean metricsEnabled;
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider scraperConnectionProvider() {
+        return ConnectionProvider.builder("trustpilot")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+            .maxIdleTime(Duration.ofSeconds(maxIdleTimeSec))
+            .maxLifeTime(Duration.ofSeconds(maxLifeTimeSec))
+            .evictInBackground(Duration.ofSeconds(evictInBackgroundSec))
+            .metrics(metricsEnabled)
+            .build();
+    }
+
+    @Bean
+    WebClient scraperWebClient(WebClient.Builder webClientBuilder, ConnectionProvider scraperConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(scraperConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .option(ChannelOption.SO_KEEPALIVE, tcpKeepAlive)
+            .keepAlive(keepAlive)
+            .compress(compress)
+            .metrics(metricsEnabled, uri -> "/review/{domain}");
+
+        // HTTP/2 is negotiated through TLS ALPN, so it is only offered for https
+        if (http2 && baseUrl.startsWith("https")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        return webClientBuilder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+
+}
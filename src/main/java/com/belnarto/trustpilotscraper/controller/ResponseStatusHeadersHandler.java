@@ -0,0 +1,26 @@
+package com.belnarto.trustpilotscraper.controller;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds the headers of a {@link ResponseStatusException}, e.g. Retry-After, to the error response, which the
+ * error handler of Spring Boot renders without them. Runs just before it and passes the error on.
+ */
+@Component
+@Order(-2)
+public class ResponseStatusHeadersHandler implements WebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        if (ex instanceof ResponseStatusException && !exchange.getResponse().isCommitted()) {
+            exchange.getResponse().getHeaders().putAll(((ResponseStatusException) ex).getResponseHeaders());
+        }
+        return Mono.error(ex);
+    }
+
+}
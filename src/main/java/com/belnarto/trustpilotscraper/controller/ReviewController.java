@@ -1,45 +1,89 @@
 package com.belnarto.trustpilotscraper.controller;
 
-import com.belnarto.trustpilotscraper.dto.ReviewDto;
-import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.dto.DomainReviewDto;
+import com.belnarto.trustpilotscraper.serializer.ReviewResponseRenderer;
+import com.belnarto.trustpilotscraper.service.DomainReviewMapper;
 import com.belnarto.trustpilotscraper.service.ReviewService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/reviews")
 @RequiredArgsConstructor
-@Slf4j
 public class ReviewController {
 
     private final ReviewService reviewService;
+    private final ReviewResponseRenderer reviewResponseRenderer;
+    private final DomainReviewMapper domainReviewMapper;
 
-    @Value("${trustpilot.default-error-message}")
-    private String defaultErrorMessage;
+    @Value("${trustpilot.batch.max-size}")
+    private int batchMaxSize;
 
+    @Value("${trustpilot.cache-ttl-sec}")
+    private long cacheTtlSec;
+
+    /**
+     * Writes the response body rendered at scrape time as is, without mapping any objects per request.
+     * The response may be cached downstream for as long as the review is cached in Redis: its age is the time
+     * since it was scraped, at most the TTL in Redis, its freshness lifetime the TTL. Reviews cached without
+     * the time they were scraped at get no age and have to be revalidated. A request with a matching
+     * If-None-Match header is answered with 304 and no body. A request shed under overload is answered with
+     * 503 and a Retry-After header.
+     */
     @GetMapping(path = "/{domain}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public Mono<ResponseEntity<ReviewDto>> getReview(@PathVariable String domain) {
-        return reviewService.getReviewByDomain(domain)
-            .map(ResponseEntity::ok)
-            .onErrorMap(Throwable.class,
+    public Mono<ResponseEntity<DataBuffer>> getReview(@PathVariable String domain, ServerWebExchange exchange) {
+        return reviewService.getCachedReviewByDomain(domain)
+            .map(cachedReview -> {
+                byte[] body = reviewResponseRenderer.getResponse(cachedReview);
+                ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .eTag(reviewResponseRenderer.getEtag(body))
+                    .contentLength(body.length);
+                if (cachedReview.getCachedAt() > 0) {
+                    long ageSec = cachedReview.ageMillis(System.currentTimeMillis()) / 1000;
+                    builder
+                        .cacheControl(CacheControl.maxAge(cacheTtlSec, TimeUnit.SECONDS).cachePublic())
+                        .header(HttpHeaders.AGE, String.valueOf(Math.min(Math.max(0, ageSec), cacheTtlSec)));
+                } else {
+                    builder.cacheControl(CacheControl.noCache().cachePublic());
+                }
+                // a matching If-None-Match is answered with 304 by the result handler, which drops the body
+                return builder.body(exchange.getResponse().bufferFactory().wrap(body));
+            })
+            .onErrorMap(e -> !(e instanceof ResponseStatusException),
                 e -> {
-                    if (e instanceof ReviewNotFoundException) {
-                        return new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-                    }
-                    log.debug("Unexpected error occurred for domain: " + domain, e);
-                    return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, defaultErrorMessage);
+                    HttpStatus status = domainReviewMapper.toHttpStatus(domain, e);
+                    return new ResponseStatusException(status, domainReviewMapper.toErrorMessage(status, e));
                 })
             .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DomainReviewDto> getReviews(@RequestBody List<String> domains) {
+        if (domains.size() > batchMaxSize) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "No more than " + batchMaxSize + " domains can be requested at once"));
+        }
+
+        return reviewService.getReviewsByDomains(domains)
+            .map(domainReviewMapper::toDomainReviewDto);
+    }
+
 }
@@ -0,0 +1,87 @@
+package com.belnarto.trustpilotscraper.controller;
+
+import com.belnarto.trustpilotscraper.dto.ScrapJobDto;
+import com.belnarto.trustpilotscraper.service.ScrapJobService;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+public class ScrapJobController {
+
+    private static final byte[] LINE_SEPARATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ScrapJobService scrapJobService;
+
+    @Value("${trustpilot.jobs.max-size}")
+    private int jobMaxSize;
+
+    @Value("${trustpilot.jobs.max-page-size}")
+    private int maxPageSize;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ScrapJobDto>> submitJob(@RequestBody List<String> domains) {
+        if (domains.size() > jobMaxSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "No more than " + jobMaxSize + " domains can be submitted at once"));
+        }
+
+        return scrapJobService.submit(domains)
+            .map(job -> ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + job.getId()))
+                .body(job));
+    }
+
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ScrapJobDto> getJob(@PathVariable String id) {
+        return scrapJobService.getJob(id)
+            .switchIfEmpty(Mono.error(() -> jobNotFound(id)));
+    }
+
+    /**
+     * Streams the results available so far, one review or error per line, as they were rendered when the domain
+     * was processed. Larger jobs are read page by page through the offset.
+     */
+    @GetMapping(path = "/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> getResults(@PathVariable String id,
+        @RequestParam(defaultValue = "0") long offset,
+        @RequestParam(required = false) Integer limit,
+        ServerHttpResponse response) {
+
+        if (offset < 0 || limit != null && (limit < 1 || limit > maxPageSize)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Offset must not be negative and limit must be between 1 and " + maxPageSize));
+        }
+
+        return scrapJobService.getJob(id)
+            .switchIfEmpty(Mono.error(() -> jobNotFound(id)))
+            .flatMapMany(job -> scrapJobService.getResults(id, offset, limit != null ? limit : maxPageSize))
+            .map(result -> response.bufferFactory().allocateBuffer()
+                .write(result, StandardCharsets.UTF_8)
+                .write(LINE_SEPARATOR));
+    }
+
+    private static ResponseStatusException jobNotFound(String id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Job " + id + " was not found");
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.belnarto.trustpilotscraper.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DomainReviewDto {
+
+    String domain;
+
+    int status;
+
+    ReviewDto review;
+
+    String message;
+
+}
@@ -0,0 +1,20 @@
+package com.belnarto.trustpilotscraper.dto;
+
+import lombok.Value;
+
+@Value
+public class ScrapJobDto {
+
+    String id;
+
+    int total;
+
+    int succeeded;
+
+    int failed;
+
+    public boolean isDone() {
+        return succeeded + failed >= total;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.belnarto.trustpilotscraper.exception;
+
+import java.time.Duration;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@Getter
+public class ScrapingOverloadedException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public ScrapingOverloadedException(String message, Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, message);
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.toSeconds()));
+        return headers;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.belnarto.trustpilotscraper.exception;
+
+public class ScrapingUnavailableException extends RuntimeException {
+
+    public ScrapingUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+public enum ExtractionMode {
+
+    /**
+     * Whole page is buffered and parsed into a Jsoup document.
+     */
+    DOM,
+
+    /**
+     * Page is scanned chunk by chunk while it is being received, and the download is cancelled
+     * as soon as the business unit element has been read.
+     */
+    STREAMING
+
+}
@@ -0,0 +1,119 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cuts the tail latency of requests to Trustpilot: if the first attempt has not answered within the given
+ * percentile of recently observed latencies, a second attempt is launched and whichever answers first wins.
+ * The hedge only wins with a value: its error, e.g. a rejection by the rate limiter under load, is dropped so it
+ * does not cancel a first attempt which would have succeeded.
+ * The delay adapts to the observed latencies and is kept within the configured bounds.
+ */
+@Component
+@Slf4j
+public class HedgingPolicy {
+
+    private static final int RECOMPUTE_EVERY_SAMPLES = 50;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    // guarded by this
+    private final long[] latencies;
+    private int latencyCount;
+    private int nextLatency;
+    private int samplesSinceRecompute;
+
+    private volatile long delayNanos;
+
+    private final AtomicLong attemptCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    public HedgingPolicy(
+        @Value("${trustpilot.hedging.enabled}") boolean enabled,
+        @Value("${trustpilot.hedging.percentile}") double percentile,
+        @Value("${trustpilot.hedging.min-delay-ms}") long minDelayMs,
+        @Value("${trustpilot.hedging.max-delay-ms}") long maxDelayMs,
+        @Value("${trustpilot.hedging.window-size}") int windowSize) {
+
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = Duration.ofMillis(minDelayMs).toNanos();
+        this.maxDelayNanos = Duration.ofMillis(maxDelayMs).toNanos();
+        this.latencies = new long[windowSize];
+        this.delayNanos = maxDelayNanos;
+    }
+
+    /**
+     * Subscribes to an attempt and, if hedging is enabled and it is slow, to one more.
+     * An error of the first attempt is propagated right away, without waiting for the hedge, while an error of
+     * the hedge is ignored and the first attempt is waited for.
+     */
+    public <T> Mono<T> hedge(Supplier<Mono<T>> attempt) {
+        Mono<T> first = timed(attempt);
+        if (!enabled) {
+            return first;
+        }
+
+        Mono<T> second = Mono.delay(getDelay())
+            .then(Mono.defer(() -> {
+                hedgeCount.incrementAndGet();
+                return timed(attempt).doOnNext(value -> hedgeWinCount.incrementAndGet());
+            }))
+            .onErrorResume(e -> {
+                log.debug("Hedge failed, waiting for the first attempt", e);
+                return Mono.never();
+            });
+        return Mono.firstWithSignal(first, second);
+    }
+
+    public Duration getDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    public long getAttemptCount() {
+        return attemptCount.get();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> attempt) {
+        return Mono.defer(() -> {
+            attemptCount.incrementAndGet();
+            long start = System.nanoTime();
+            return attempt.get().doOnNext(value -> recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[nextLatency] = latencyNanos;
+        nextLatency = (nextLatency + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+
+        if (++samplesSinceRecompute >= RECOMPUTE_EVERY_SAMPLES || latencyCount < RECOMPUTE_EVERY_SAMPLES) {
+            samplesSinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            long percentileNanos = sorted[Math.min(latencyCount - 1, (int) (latencyCount * percentile))];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, percentileNanos));
+            log.debug("Hedging delay is now " + getDelay());
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the parsing of review pages on a fixed number of dedicated threads, so that large pages never block the
+ * Netty event loops which also serve the cache hits. Pages wait for a thread in a bounded queue; once it is
+ * full further pages are rejected with {@link ScrapingUnavailableException} rather than piling up in memory.
+ */
+@Component
+public class ParseScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWaitTimer;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ParseScheduler(MeterRegistry meterRegistry,
+        @Value("${trustpilot.parse.threads}") int threads,
+        @Value("${trustpilot.parse.max-queue-size}") int maxQueueSize) {
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxQueueSize), new CustomizableThreadFactory("parse-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        this.queueWaitTimer = Timer.builder("trustpilot.parse.queue.wait")
+            .description("Time a page waits for a parse thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /**
+     * Calls the task on a parse thread. A task which has not started yet is skipped if the subscription is
+     * cancelled.
+     */
+    public <T> Mono<T> submit(Callable<T> task) {
+        return Mono.create(sink -> {
+            long submittedAt = System.nanoTime();
+            Future<?> future;
+            try {
+                future = executor.submit(() -> {
+                    queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                    try {
+                        sink.success(task.call());
+                    } catch (Exception e) {
+                        sink.error(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejectedCount.incrementAndGet();
+                sink.error(new ScrapingUnavailableException("Too many pages waiting to be parsed"));
+                return;
+            }
+            sink.onCancel(() -> future.cancel(false));
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.Getter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A bounded queue of calls waiting for a permit, each for a bounded time. The permits are handed out by the
+ * owner of the queue: it is asked to drain whenever a call is enqueued, then polls the calls it has a permit for
+ * and runs them, and drains again whenever a permit is released. Calls arriving at a full queue, or not polled
+ * within the maximum wait time, fail with the errors supplied by the owner.
+ */
+public class PermitQueue {
+
+    private final int maxSize;
+    private final Duration maxWait;
+    private final Runnable drain;
+
+    private final Queue<Waiter<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    public PermitQueue(int maxSize, Duration maxWait, Runnable drain) {
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.drain = drain;
+    }
+
+    /**
+     * Subscribes to the call once the owner runs it, failing with the rejected error if the queue is full,
+     * or with the expired error if the call is not polled within the maximum wait time.
+     */
+    public <T> Mono<T> enqueue(Supplier<Mono<T>> call, Supplier<? extends Throwable> rejected,
+        Supplier<? extends Throwable> expired) {
+
+        return enqueue(call, maxWait, rejected, expired);
+    }
+
+    /**
+     * Same as {@link #enqueue(Supplier, Supplier, Supplier)} with a shorter maximum wait time, e.g. for a call
+     * which has already waited for part of it.
+     */
+    public <T> Mono<T> enqueue(Supplier<Mono<T>> call, Duration maxWait, Supplier<? extends Throwable> rejected,
+        Supplier<? extends Throwable> expired) {
+
+        return Mono.create(sink -> {
+            Waiter<T> waiter = new Waiter<>(sink, call, expired);
+            sink.onCancel(waiter::cancel);
+
+            if (size.incrementAndGet() > maxSize) {
+                size.decrementAndGet();
+                sink.error(rejected.get());
+                return;
+            }
+            queue.offer(waiter);
+            waiter.scheduleExpiration(maxWait);
+            drain.run();
+            if (!waiter.started.get()) {
+                queuedCount.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Takes the call which has been waiting the longest, or returns null if none is.
+     */
+    public Waiter<?> poll() {
+        Waiter<?> waiter;
+        while ((waiter = queue.poll()) != null) {
+            if (waiter.start()) {
+                size.decrementAndGet();
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of calls which could not be run right away and had to wait in the queue.
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    public final class Waiter<T> {
+
+        private final MonoSink<T> sink;
+        private final Supplier<Mono<T>> call;
+        private final Supplier<? extends Throwable> expired;
+        @Getter
+        private final long enqueuedAtNanos = System.nanoTime();
+
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final Disposable.Swap subscription = Disposables.swap();
+        private volatile Disposable expiration;
+
+        private Waiter(MonoSink<T> sink, Supplier<Mono<T>> call, Supplier<? extends Throwable> expired) {
+            this.sink = sink;
+            this.call = call;
+            this.expired = expired;
+        }
+
+        /**
+         * Subscribes to the call, once the owner holds the permit for it.
+         */
+        public void run() {
+            subscription.update(Mono.defer(call).subscribe(sink::success, sink::error, sink::success));
+        }
+
+        private void scheduleExpiration(Duration maxWait) {
+            expiration = Schedulers.parallel().schedule(() -> {
+                if (dequeue()) {
+                    sink.error(expired.get());
+                }
+            }, maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private boolean start() {
+            if (!started.compareAndSet(false, true)) {
+                return false;
+            }
+            Disposable scheduledExpiration = expiration;
+            if (scheduledExpiration != null) {
+                scheduledExpiration.dispose();
+            }
+            return true;
+        }
+
+        private void cancel() {
+            dequeue();
+            subscription.dispose();
+        }
+
+        private boolean dequeue() {
+            if (!started.compareAndSet(false, true)) {
+                return false;
+            }
+            queue.remove(this);
+            size.decrementAndGet();
+            return true;
+        }
+
+    }
+
+}
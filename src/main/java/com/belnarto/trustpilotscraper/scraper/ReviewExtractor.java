@@ -0,0 +1,27 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * One way of finding the review in a page, which is fed to it chunk by chunk. Not thread-safe, one instance is
+ * meant to be used for a single response.
+ */
+interface ReviewExtractor {
+
+    /**
+     * Consumes the next chunk of the page.
+     *
+     * @return true once no more input is needed
+     */
+    boolean feed(ByteBuffer chunk);
+
+    /**
+     * Returns the review found in the page fed so far, or nothing if this extractor could not find it.
+     *
+     * @throws com.belnarto.trustpilotscraper.exception.ReviewParsingException if the review is malformed
+     */
+    Optional<ReviewDto> extract();
+
+}
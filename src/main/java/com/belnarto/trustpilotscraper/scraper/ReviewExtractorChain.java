@@ -0,0 +1,115 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.belnarto.trustpilotscraper.exception.ReviewParsingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Feeds the page to all the extractors at once, as the page can not be read again, and stops as soon as any of
+ * them needs no more input. The review is then taken from the first extractor, in the order of the chain, which
+ * found it. The cheap ones go first and the last one is the fallback: its failure is the failure of the chain,
+ * while the others just miss. The time spent in each extractor is recorded along with whether it found the
+ * review. Not thread-safe, one instance is meant to be used for a single response.
+ */
+@Slf4j
+class ReviewExtractorChain {
+
+    private static final List<String> RESULTS = List.of("hit", "miss", "failed", "skipped");
+
+    private final List<ReviewExtractorType> types;
+    private final List<ReviewExtractor> extractors;
+    private final long[] feedNanos;
+    private final List<Map<String, Timer>> timers;
+
+    /**
+     * @param extractors the extractors in the order of the chain
+     * @param timers the timers registered by {@link #registerTimers}
+     */
+    ReviewExtractorChain(Map<ReviewExtractorType, ReviewExtractor> extractors,
+        Map<ReviewExtractorType, Map<String, Timer>> timers) {
+
+        this.types = new ArrayList<>(extractors.keySet());
+        this.extractors = new ArrayList<>(extractors.values());
+        this.feedNanos = new long[extractors.size()];
+        this.timers = new ArrayList<>(types.size());
+        types.forEach(type -> this.timers.add(timers.get(type)));
+    }
+
+    /**
+     * Registers the timers of every extractor and result once, to be shared by all the chains.
+     */
+    static Map<ReviewExtractorType, Map<String, Timer>> registerTimers(MeterRegistry meterRegistry) {
+        Map<ReviewExtractorType, Map<String, Timer>> timers = new EnumMap<>(ReviewExtractorType.class);
+        for (ReviewExtractorType type : ReviewExtractorType.values()) {
+            Map<String, Timer> resultTimers = new HashMap<>();
+            for (String result : RESULTS) {
+                resultTimers.put(result, Timer.builder("trustpilot.extraction")
+                    .description("Time spent in each extractor of the chain, by whether it found the review")
+                    .tags("extractor", type.name().toLowerCase(), "result", result)
+                    .register(meterRegistry));
+            }
+            timers.put(type, resultTimers);
+        }
+        return timers;
+    }
+
+    /**
+     * Consumes the next chunk of the page.
+     *
+     * @return true once any of the extractors needs no more input
+     */
+    boolean feed(ByteBuffer chunk) {
+        boolean done = false;
+        for (int i = 0; i < extractors.size(); i++) {
+            long start = System.nanoTime();
+            done |= extractors.get(i).feed(chunk.duplicate());
+            feedNanos[i] += System.nanoTime() - start;
+        }
+        return done;
+    }
+
+    /**
+     * Returns the review found by the first extractor which found it, or nothing if none did.
+     *
+     * @throws ReviewParsingException if the last extractor found a malformed review and none before found it
+     */
+    Optional<ReviewDto> extract() {
+        Optional<ReviewDto> review = Optional.empty();
+        for (int i = 0; i < extractors.size(); i++) {
+            if (review.isPresent()) {
+                record(i, "skipped", 0);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            String result = "failed";
+            try {
+                review = extractors.get(i).extract();
+                result = review.isPresent() ? "hit" : "miss";
+            } catch (ReviewParsingException e) {
+                if (i == extractors.size() - 1) {
+                    throw e;
+                }
+                log.debug("Extractor " + types.get(i) + " failed, falling back to the next one", e);
+            } finally {
+                record(i, result, System.nanoTime() - start);
+            }
+        }
+        return review;
+    }
+
+    private void record(int index, String result, long extractNanos) {
+        timers.get(index).get(result).record(feedNanos[index] + extractNanos, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+public enum ReviewExtractorType {
+
+    /**
+     * Aggregate rating embedded in the page as JSON-LD structured data, found by a byte-level scan.
+     */
+    STRUCTURED_DATA,
+
+    /**
+     * Children of the business unit element, read as they are positioned, with the extraction mode
+     * configured.
+     */
+    POSITIONAL
+
+}
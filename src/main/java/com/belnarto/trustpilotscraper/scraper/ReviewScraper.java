@@ -5,25 +5,82 @@ import static org.springframework.util.StringUtils.hasText;
 import com.belnarto.trustpilotscraper.dto.ReviewDto;
 import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
 import com.belnarto.trustpilotscraper.exception.ReviewParsingException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 @Component
 @Slf4j
 public class ReviewScraper {
 
     private static final String BUSINESS_UNIT_ID = "business-unit-title";
+    private static final String UPSTREAM_UNAVAILABLE_MESSAGE =
+        "Trustpilot is unavailable at the moment, please try again later";
+
+    private static final List<String> SCRAP_OUTCOMES =
+        List.of("success", "not_modified", "not_found", "parsing_failed", "timeout", "unavailable", "error");
+    private static final List<String> PARSE_FAILURE_REASONS = List.of("invalid_html", "element_not_found",
+        "not_enough_children", "not_extracted", "invalid_reviews_count", "invalid_rating");
 
     private final WebClient webClient;
+    private final UpstreamRateLimiter upstreamRateLimiter;
+    private final HedgingPolicy hedgingPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final ParseScheduler parseScheduler;
+    private final MeterRegistry meterRegistry;
+
+    // the meters of the hot paths are registered once rather than looked up per call
+    private final Map<String, Timer> scrapTimers = new HashMap<>();
+    private final Map<ExtractionMode, Timer> parseTimers = new EnumMap<>(ExtractionMode.class);
+    private final Map<String, Counter> parseFailureCounters = new HashMap<>();
+    private final Map<ReviewExtractorType, Map<String, Timer>> extractionTimers;
+
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong modifiedCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong parseCount = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong savedParseNanos = new AtomicLong();
 
     @Value("${trustpilot.review-url}")
     private String reviewUrl;
@@ -31,69 +88,421 @@ public class ReviewScraper {
     @Value("${trustpilot.timeout-sec}")
     private int timeoutSec;
 
-    public ReviewScraper(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
+    @Value("${trustpilot.deadline-ms}")
+    private long deadlineMs;
+
+    @Value("${trustpilot.extraction-mode}")
+    private ExtractionMode extractionMode;
+
+    @Value("${trustpilot.extractors}")
+    private List<ReviewExtractorType> extractorTypes;
+
+    @Value("${trustpilot.retry.max-attempts}")
+    private int retryMaxAttempts;
+
+    @Value("${trustpilot.retry.min-back-off-ms}")
+    private long retryMinBackOffMs;
+
+    @Value("${trustpilot.retry.max-back-off-ms}")
+    private long retryMaxBackOffMs;
+
+    public ReviewScraper(WebClient scraperWebClient, UpstreamRateLimiter upstreamRateLimiter,
+        HedgingPolicy hedgingPolicy, CircuitBreaker scraperCircuitBreaker, ParseScheduler parseScheduler,
+        MeterRegistry meterRegistry) {
+
+        this.webClient = scraperWebClient;
+        this.upstreamRateLimiter = upstreamRateLimiter;
+        this.hedgingPolicy = hedgingPolicy;
+        this.circuitBreaker = scraperCircuitBreaker;
+        this.parseScheduler = parseScheduler;
+        this.meterRegistry = meterRegistry;
+
+        for (String outcome : SCRAP_OUTCOMES) {
+            scrapTimers.put(outcome, Timer.builder("trustpilot.scrap")
+                .description("Time to get a review from Trustpilot, including retries and hedges")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+        for (ExtractionMode mode : ExtractionMode.values()) {
+            parseTimers.put(mode, Timer.builder("trustpilot.parse")
+                .description("Time spent extracting a review from the page")
+                .tag("mode", mode.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+        for (String reason : PARSE_FAILURE_REASONS) {
+            parseFailureCounters.put(reason, meterRegistry.counter("trustpilot.parse.failures", "reason", reason));
+        }
+        this.extractionTimers = ReviewExtractorChain.registerTimers(meterRegistry);
     }
 
     public Mono<ReviewDto> scrapForReviewByDomain(final String domain) {
+        return scrapForReviewByDomain(domain, UpstreamValidators.NONE)
+            .map(ScrapedReview::getReview);
+    }
+
+    /**
+     * Requests the review page conditionally if there are validators of the previously scraped page, and
+     * completes with a not modified result, skipping the download and the parsing, if it has not changed.
+     */
+    public Mono<ScrapedReview> scrapForReviewByDomain(final String domain, final UpstreamValidators validators) {
         if (!hasText(domain)) {
             return Mono.empty();
         }
 
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return scrapWithPolicies(domain, validators)
+                .doOnSuccess(review -> sample.stop(scrapTimers.get(
+                    review != null && review.isNotModified() ? "not_modified" : "success")))
+                .doOnError(e -> sample.stop(scrapTimers.get(getOutcome(e))));
+        });
+    }
+
+    /**
+     * Each attempt is bounded by the timeout, and the whole call, with the waits for a permit, the retries and
+     * the hedges, by the deadline. The deadline is within the circuit breaker, so it counts as a failure there.
+     */
+    private Mono<ScrapedReview> scrapWithPolicies(String domain, UpstreamValidators validators) {
+        return hedgingPolicy.hedge(() -> upstreamRateLimiter.execute(() -> scrap(domain, validators)))
+            .retryWhen(Retry.backoff(retryMaxAttempts, Duration.ofMillis(retryMinBackOffMs))
+                .maxBackoff(Duration.ofMillis(retryMaxBackOffMs))
+                .jitter(0.5)
+                .filter(ReviewScraper::isTransient)
+                .doBeforeRetry(signal -> {
+                    retryCount.incrementAndGet();
+                    log.debug("Retrying scrapping review from domain: " + domain, signal.failure());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+            .timeout(Duration.ofMillis(deadlineMs))
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+            .onErrorMap(CallNotPermittedException.class,
+                e -> new ScrapingUnavailableException(UPSTREAM_UNAVAILABLE_MESSAGE));
+    }
+
+    private static String getOutcome(Throwable e) {
+        if (e instanceof ReviewNotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof ReviewParsingException) {
+            return "parsing_failed";
+        }
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof ScrapingUnavailableException) {
+            return "unavailable";
+        }
+        return "error";
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getModifiedCount() {
+        return modifiedCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    public long getSavedParseNanos() {
+        return savedParseNanos.get();
+    }
+
+    /**
+     * Connection failures and server errors are worth another attempt, anything else (e.g. the review was not
+     * found, could not be parsed, or our own rate limiter gave up) would fail the same way again.
+     */
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    private Mono<ScrapedReview> scrap(String domain, UpstreamValidators validators) {
         log.debug("Start scrapping review from domain: " + domain);
 
-        return webClient
+        WebClient.ResponseSpec response = webClient
             .get()
-            .uri(reviewUrl + domain)
+            .uri(reviewUrl + "{domain}", domain)
+            .headers(validators::applyTo)
             .retrieve()
             .onStatus(HttpStatus.NOT_FOUND::equals, clientResponse ->
                 clientResponse.bodyToMono(String.class)
                     .flatMap(error -> Mono.error(
                         new ReviewNotFoundException("Review for domain: " + domain + " was not found")))
             )
-            .bodyToMono(String.class)
-            .map(this::parseReviewDocument)
-            .timeout(Duration.ofSeconds(timeoutSec));
+            .onStatus(status -> status == HttpStatus.TOO_MANY_REQUESTS || status == HttpStatus.SERVICE_UNAVAILABLE,
+                clientResponse -> {
+                    upstreamRateLimiter.pause(getRetryAfter(clientResponse.headers().asHttpHeaders()));
+                    return clientResponse.createException();
+                });
+
+        Mono<ScrapedReview> review = extractionMode == ExtractionMode.STREAMING
+            ? response.toEntityFlux(DataBuffer.class)
+                .flatMap(entity -> isNotModified(entity, validators)
+                    ? entity.getBody().doOnNext(DataBufferUtils::release)
+                        .then(Mono.fromSupplier(() -> notModified(domain, validators, entity.getHeaders())))
+                    : extractReviewFromStream(domain, entity.getBody())
+                        .map(reviewDto -> ScrapedReview.of(reviewDto, UpstreamValidators.of(entity.getHeaders()))))
+            : response.toEntity(byte[].class)
+                .flatMap(entity -> isNotModified(entity, validators)
+                    ? Mono.fromSupplier(() -> notModified(domain, validators, entity.getHeaders()))
+                    : parseScheduler.submit(() -> extractReviewFromPage(domain, entity.getBody()))
+                        .map(reviewDto -> ScrapedReview.of(reviewDto, UpstreamValidators.of(entity.getHeaders()))));
+
+        return review.timeout(Duration.ofSeconds(timeoutSec));
     }
 
-    private ReviewDto parseReviewDocument(String reviewHtml) {
+    private static boolean isNotModified(ResponseEntity<?> entity, UpstreamValidators validators) {
+        return entity.getStatusCode() == HttpStatus.NOT_MODIFIED && !validators.isEmpty();
+    }
+
+    /**
+     * Nothing is downloaded or parsed for a page which has not been modified, what that saves is estimated
+     * from the averages of the pages which were.
+     */
+    private ScrapedReview notModified(String domain, UpstreamValidators sent, HttpHeaders headers) {
+        log.debug("Review page has not been modified for domain: " + domain);
+        notModifiedCount.incrementAndGet();
+        long pages = modifiedCount.get();
+        if (pages > 0) {
+            savedBytes.addAndGet(downloadedBytes.get() / pages);
+        }
+        long parses = parseCount.get();
+        if (parses > 0) {
+            savedParseNanos.addAndGet(parseNanos.get() / parses);
+        }
+        return ScrapedReview.notModified(UpstreamValidators.of(headers).orElse(sent));
+    }
+
+    private Duration getRetryAfter(HttpHeaders headers) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (!hasText(retryAfter)) {
+            return null;
+        }
+
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Duration.between(Instant.now(), retryAt.toInstant());
+            } catch (DateTimeParseException ex) {
+                log.debug("Retry-After header has not suitable value: \"" + retryAfter + "\"");
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The chunks are copied off the pooled buffers on the I/O thread, which is cheap, and scanned on the parse
+     * threads one after another.
+     */
+    private Mono<ReviewDto> extractReviewFromStream(String domain, Flux<DataBuffer> reviewHtml) {
+        return Mono.defer(() -> {
+            ReviewExtractorChain extractor = newExtractorChain(ExtractionMode.STREAMING, domain);
+            AtomicLong feedNanos = new AtomicLong();
+            return reviewHtml
+                .map(dataBuffer -> {
+                    downloadedBytes.addAndGet(dataBuffer.readableByteCount());
+                    try {
+                        ByteBuffer view = dataBuffer.asByteBuffer();
+                        return ByteBuffer.allocate(view.remaining()).put(view).flip();
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                })
+                .concatMap(chunk -> parseScheduler.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        return extractor.feed(chunk);
+                    } finally {
+                        feedNanos.addAndGet(System.nanoTime() - start);
+                    }
+                }), 1)
+                .takeUntil(Boolean::booleanValue)
+                .then(Mono.fromCallable(() -> {
+                    modifiedCount.incrementAndGet();
+                    long start = System.nanoTime();
+                    try {
+                        return extractReview(extractor);
+                    } finally {
+                        recordParse(ExtractionMode.STREAMING, feedNanos.get() + System.nanoTime() - start);
+                    }
+                }));
+        });
+    }
+
+    private ReviewDto extractReview(ReviewExtractorChain extractor) {
+        return extractor.extract()
+            .orElseThrow(() -> {
+                log.debug("None of the extractors found the review");
+                return parsingFailed("not_extracted");
+            });
+    }
+
+    /**
+     * The extractors are tried in the order configured, the positional one works in the extraction mode
+     * configured, the structured data one only takes the rating of the business of the domain requested.
+     */
+    private ReviewExtractorChain newExtractorChain(ExtractionMode mode, String domain) {
+        Map<ReviewExtractorType, ReviewExtractor> extractors = new LinkedHashMap<>();
+        for (ReviewExtractorType type : extractorTypes) {
+            if (type == ReviewExtractorType.STRUCTURED_DATA) {
+                extractors.put(type, new StructuredDataReviewExtractor(domain));
+            } else {
+                extractors.put(type, mode == ExtractionMode.STREAMING
+                    ? newStreamingPositionalExtractor()
+                    : newDomPositionalExtractor());
+            }
+        }
+        return new ReviewExtractorChain(extractors, extractionTimers);
+    }
+
+    private ReviewExtractor newStreamingPositionalExtractor() {
+        StreamingReviewExtractor extractor = new StreamingReviewExtractor(BUSINESS_UNIT_ID);
+        return new ReviewExtractor() {
+
+            @Override
+            public boolean feed(ByteBuffer chunk) {
+                return extractor.feed(chunk);
+            }
+
+            @Override
+            public Optional<ReviewDto> extract() {
+                return Optional.of(extractReview(extractor));
+            }
+        };
+    }
+
+    /**
+     * Keeps the chunks until the whole page is there, as it takes a complete document to find the element.
+     */
+    private ReviewExtractor newDomPositionalExtractor() {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        return new ReviewExtractor() {
+
+            @Override
+            public boolean feed(ByteBuffer chunk) {
+                chunks.add(chunk);
+                return false;
+            }
+
+            @Override
+            public Optional<ReviewDto> extract() {
+                ByteBuffer page = ByteBuffer.allocate(chunks.stream().mapToInt(ByteBuffer::remaining).sum());
+                chunks.forEach(page::put);
+                return Optional.of(parseReviewDocument(new String(page.array(), StandardCharsets.UTF_8)));
+            }
+        };
+    }
+
+    ReviewDto extractReview(StreamingReviewExtractor extractor) {
+        log.debug("Scanned " + extractor.getBytesRead() + " bytes of review html");
+
+        if (!extractor.isTargetFound()) {
+            log.debug("Business unit element was not found");
+            throw parsingFailed("element_not_found");
+        }
+
+        if (extractor.getChildCount() < 3) {
+            log.debug("Business unit has not enough child elements");
+            throw parsingFailed("not_enough_children");
+        }
+
+        return toReviewDto(extractor.getReviewsText(), extractor.getRatingText());
+    }
+
+    private ReviewDto extractReviewFromPage(String domain, byte[] reviewHtml) {
+        byte[] page = reviewHtml == null ? new byte[0] : reviewHtml;
+        modifiedCount.incrementAndGet();
+        downloadedBytes.addAndGet(page.length);
+        long start = System.nanoTime();
+        try {
+            ReviewExtractorChain extractor = newExtractorChain(ExtractionMode.DOM, domain);
+            extractor.feed(ByteBuffer.wrap(page));
+            return extractReview(extractor);
+        } finally {
+            recordParse(ExtractionMode.DOM, System.nanoTime() - start);
+        }
+    }
+
+    private void recordParse(ExtractionMode mode, long nanos) {
+        parseCount.incrementAndGet();
+        parseNanos.addAndGet(nanos);
+        parseTimers.get(mode).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private ReviewParsingException parsingFailed(String reason) {
+        parseFailureCounters.get(reason).increment();
+        return new ReviewParsingException();
+    }
+
+    ReviewDto parseReviewDocument(String reviewHtml) {
         Document doc;
         try {
             doc = Jsoup.parse(reviewHtml);
         } catch (Exception e) {
             log.error("Error occurred during parsing review html", e);
+            parseFailureCounters.get("invalid_html").increment();
             throw new ReviewParsingException(e);
         }
 
         Element targetElement = doc.getElementById(BUSINESS_UNIT_ID);
         if (targetElement == null) {
             log.debug("Business unit element was not found");
-            throw new ReviewParsingException();
+            throw parsingFailed("element_not_found");
         }
 
         if (targetElement.children().isEmpty() || targetElement.children().size() < 3) {
             log.debug("Business unit has not enough child elements");
-            throw new ReviewParsingException();
+            throw parsingFailed("not_enough_children");
         }
 
-        int reviewsCount = getReviewsCount(targetElement.child(1))
-            .orElseThrow(ReviewParsingException::new);
+        return toReviewDto(targetElement.child(1).text(), targetElement.child(2).text());
+    }
+
+    private ReviewDto toReviewDto(String reviewsText, String ratingText) {
+        int reviewsCount = getReviewsCount(reviewsText)
+            .orElseThrow(() -> parsingFailed("invalid_reviews_count"));
         log.debug("Reviews count is " + reviewsCount);
 
-        double rating = getRating(targetElement.child(2))
-            .orElseThrow(ReviewParsingException::new);
+        double rating = getRating(ratingText)
+            .orElseThrow(() -> parsingFailed("invalid_rating"));
         log.debug("Rating is " + rating);
 
         return new ReviewDto(reviewsCount, rating);
     }
 
-    private Optional<Integer> getReviewsCount(Element reviewsElement) {
-        if (reviewsElement == null) {
+    Optional<Integer> getReviewsCount(String reviewsText) {
+        if (reviewsText == null) {
             log.debug("Reviews element is not present");
             return Optional.empty();
         }
 
-        String reviewsElementText = reviewsElement.text().trim();
+        String reviewsElementText = reviewsText.trim();
         if (!hasText(reviewsElementText)) {
             log.debug("Reviews element has no text representation");
             return Optional.empty();
@@ -108,13 +517,13 @@ public class ReviewScraper {
         return Optional.of(Integer.parseInt(reviewsCount));
     }
 
-    private Optional<Double> getRating(Element ratingElement) {
-        if (ratingElement == null) {
+    Optional<Double> getRating(String ratingText) {
+        if (ratingText == null) {
             log.debug("Rating element is not present");
             return Optional.empty();
         }
 
-        String rating = ratingElement.text().trim();
+        String rating = ratingText.trim();
         if (!hasText(rating) || !rating.matches("\\d\\.?\\d*")) {
             log.debug("Rating element has not suitable text representation: \"" + rating + "\"");
             return Optional.empty();
@@ -0,0 +1,29 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import lombok.Value;
+
+/**
+ * Outcome of a request for a review page together with the validators of the page: either the review extracted
+ * from it, or no review if the page has not been modified since the validators sent with the request.
+ */
+@Value
+public class ScrapedReview {
+
+    ReviewDto review;
+
+    UpstreamValidators validators;
+
+    public static ScrapedReview of(ReviewDto review, UpstreamValidators validators) {
+        return new ScrapedReview(review, validators);
+    }
+
+    public static ScrapedReview notModified(UpstreamValidators validators) {
+        return new ScrapedReview(null, validators);
+    }
+
+    public boolean isNotModified() {
+        return review == null;
+    }
+
+}
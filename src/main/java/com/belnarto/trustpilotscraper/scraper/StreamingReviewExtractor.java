@@ -0,0 +1,403 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import org.jsoup.parser.Parser;
+
+/**
+ * Incremental HTML scanner which is fed with the response body chunk by chunk and captures the text of the
+ * children of the business unit element, without building a DOM or keeping the page in memory.
+ * Once the rating child is closed nothing else is needed from the page, so the rest of it can be skipped.
+ * Elements which HTML lets be closed implicitly, e.g. a {@code p} followed by a {@code div} or an {@code li}
+ * followed by another one, are closed the way Jsoup closes them, so the children are counted as in its DOM.
+ * Not thread-safe, one instance is meant to be used for a single response.
+ */
+class StreamingReviewExtractor {
+
+    private static final int REVIEWS_CHILD_INDEX = 1;
+    private static final int RATING_CHILD_INDEX = 2;
+
+    private static final int MAX_TAG_LENGTH = 64 * 1024;
+
+    private static final Set<String> VOID_ELEMENTS = Set.of(
+        "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr");
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style", "textarea", "title");
+
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+        "br", "div", "p", "h1", "h2", "h3", "h4", "h5", "h6", "li", "ul", "ol", "table", "tr", "td", "th");
+
+    private static final Set<String> HEADINGS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+
+    // the elements whose start closes an open p
+    private static final Set<String> P_CLOSERS = Set.of(
+        "address", "article", "aside", "blockquote", "center", "dd", "details", "dialog", "dir", "div", "dl", "dt",
+        "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hgroup",
+        "hr", "li", "listing", "main", "menu", "nav", "ol", "p", "pre", "section", "summary", "table", "ul", "xmp");
+
+    // the elements an implicitly closed element is not looked for beyond
+    private static final Set<String> SCOPE = Set.of(
+        "applet", "caption", "html", "marquee", "object", "table", "td", "th", "template");
+    private static final Set<String> BUTTON_SCOPE = union(SCOPE, Set.of("button"));
+    private static final Set<String> LIST_ITEM_SCOPE = union(SCOPE, Set.of("ol", "ul"));
+    private static final Set<String> DEFINITION_SCOPE = union(SCOPE, Set.of("dl"));
+
+    private enum State {
+        TEXT,
+        TAG,
+        COMMENT,
+        RAW_TEXT
+    }
+
+    private final String targetId;
+
+    private State state = State.TEXT;
+    private final StringBuilder tag = new StringBuilder();
+    private char tagQuote;
+    private int commentDashes;
+    private String rawTextEndTag;
+    private int rawTextEndTagMatched;
+
+    private boolean targetFound;
+    // the business unit element and its descendants which are still open, the innermost first
+    private final Deque<String> openElements = new ArrayDeque<>();
+    private int childIndex = -1;
+    private boolean done;
+
+    private final ByteArrayOutputStream reviewsText = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream ratingText = new ByteArrayOutputStream();
+
+    private long bytesRead;
+
+    StreamingReviewExtractor(String targetId) {
+        this.targetId = targetId;
+    }
+
+    /**
+     * Consumes the next chunk of the page.
+     *
+     * @return true once both the reviews count and the rating texts are captured and no more input is needed
+     */
+    boolean feed(ByteBuffer chunk) {
+        while (!done && chunk.hasRemaining()) {
+            byte b = chunk.get();
+            bytesRead++;
+            switch (state) {
+                case TEXT:
+                    onText(b);
+                    break;
+                case TAG:
+                    onTag(b);
+                    break;
+                case COMMENT:
+                    onComment(b);
+                    break;
+                default:
+                    onRawText(b);
+            }
+        }
+        return done;
+    }
+
+    boolean isTargetFound() {
+        return targetFound;
+    }
+
+    int getChildCount() {
+        return childIndex + 1;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    String getReviewsText() {
+        return normalize(reviewsText);
+    }
+
+    String getRatingText() {
+        return normalize(ratingText);
+    }
+
+    private void onText(byte b) {
+        if (b == '<') {
+            state = State.TAG;
+            tag.setLength(0);
+            tagQuote = 0;
+            return;
+        }
+        ByteArrayOutputStream text = currentText();
+        if (text != null) {
+            text.write(b);
+        }
+    }
+
+    private void onTag(byte b) {
+        char c = (char) (b & 0xFF);
+        if (tag.length() == 0 && c != '/' && c != '!' && !Character.isLetter(c)) {
+            // not a tag, just a '<' in the text
+            state = State.TEXT;
+            onText((byte) '<');
+            onText(b);
+            return;
+        }
+        if (tagQuote != 0) {
+            if (c == tagQuote) {
+                tagQuote = 0;
+            }
+        } else if (c == '"' || c == '\'') {
+            tagQuote = c;
+        } else if (c == '>') {
+            state = State.TEXT;
+            onTagClosed();
+            return;
+        }
+        if (tag.length() < MAX_TAG_LENGTH) {
+            tag.append(c);
+        }
+        if (tag.length() == 3 && tag.charAt(0) == '!' && tag.charAt(1) == '-' && tag.charAt(2) == '-') {
+            state = State.COMMENT;
+            commentDashes = 0;
+        }
+    }
+
+    private void onComment(byte b) {
+        if (b == '-') {
+            commentDashes++;
+        } else if (b == '>' && commentDashes >= 2) {
+            state = State.TEXT;
+        } else {
+            commentDashes = 0;
+        }
+    }
+
+    private void onRawText(byte b) {
+        char c = Character.toLowerCase((char) (b & 0xFF));
+        if (c != rawTextEndTag.charAt(rawTextEndTagMatched)) {
+            rawTextEndTagMatched = c == '<' ? 1 : 0;
+            return;
+        }
+        rawTextEndTagMatched++;
+        if (rawTextEndTagMatched == rawTextEndTag.length()) {
+            // the rest of the end tag up to '>' is consumed as a regular tag
+            state = State.TAG;
+            tag.setLength(0);
+            tag.append(rawTextEndTag, 1, rawTextEndTag.length());
+        }
+    }
+
+    private void onTagClosed() {
+        if (tag.length() == 0 || tag.charAt(0) == '!' || tag.charAt(0) == '?') {
+            return;
+        }
+
+        boolean endTag = tag.charAt(0) == '/';
+        int nameStart = endTag ? 1 : 0;
+        int nameEnd = nameStart;
+        while (nameEnd < tag.length() && !isTagNameEnd(tag.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String name = tag.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+        boolean selfClosing = !endTag && tag.charAt(tag.length() - 1) == '/';
+
+        if (endTag) {
+            onEndTag(name);
+        } else {
+            onStartTag(name, selfClosing || VOID_ELEMENTS.contains(name));
+            if (!selfClosing && RAW_TEXT_ELEMENTS.contains(name)) {
+                state = State.RAW_TEXT;
+                rawTextEndTag = "</" + name;
+                rawTextEndTagMatched = 0;
+            }
+        }
+    }
+
+    private void onStartTag(String name, boolean empty) {
+        if (!targetFound) {
+            if (!empty && tag.indexOf(targetId) >= 0 && targetId.equals(getAttribute("id"))) {
+                targetFound = true;
+                openElements.push(name);
+            }
+            return;
+        }
+
+        closeImplied(name);
+        if (done) {
+            return;
+        }
+        if (BLOCK_ELEMENTS.contains(name)) {
+            writeSeparator();
+        }
+        if (openElements.size() == 1) {
+            childIndex++;
+        }
+        if (!empty) {
+            openElements.push(name);
+        }
+    }
+
+    /**
+     * Closes the elements which the start of the given one ends implicitly.
+     */
+    private void closeImplied(String name) {
+        if (name.equals("li")) {
+            close(Set.of("li"), LIST_ITEM_SCOPE);
+        } else if (name.equals("dd") || name.equals("dt")) {
+            close(Set.of("dd", "dt"), DEFINITION_SCOPE);
+        }
+        if (!done && P_CLOSERS.contains(name)) {
+            close(Set.of("p"), BUTTON_SCOPE);
+        }
+        if (!done && HEADINGS.contains(name) && HEADINGS.contains(openElements.peek())) {
+            popElement();
+        }
+    }
+
+    private void onEndTag(String name) {
+        if (!targetFound) {
+            return;
+        }
+
+        if ((name.equals("p") && !isInScope(Set.of("p"), BUTTON_SCOPE)) || name.equals("br")) {
+            // a stray </p> stands for an empty p, and </br> for a br
+            onStartTag(name, true);
+            return;
+        }
+        close(HEADINGS.contains(name) ? HEADINGS : Set.of(name), name.equals("li") ? LIST_ITEM_SCOPE : SCOPE);
+    }
+
+    /**
+     * Pops the elements up to the innermost one with any of the given names, if it is in scope, otherwise leaves
+     * them open.
+     */
+    private void close(Set<String> names, Set<String> scope) {
+        if (!isInScope(names, scope)) {
+            return;
+        }
+        String popped;
+        do {
+            popped = popElement();
+        } while (!done && !names.contains(popped));
+    }
+
+    private boolean isInScope(Set<String> names, Set<String> scope) {
+        for (Iterator<String> elements = openElements.iterator(); elements.hasNext(); ) {
+            String element = elements.next();
+            if (names.contains(element)) {
+                return true;
+            }
+            if (scope.contains(element)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private String popElement() {
+        String name = openElements.peek();
+        if (BLOCK_ELEMENTS.contains(name)) {
+            writeSeparator();
+        }
+        openElements.pop();
+        if (openElements.isEmpty()) {
+            // the business unit element itself is closed
+            done = true;
+        } else if (openElements.size() == 1 && childIndex == RATING_CHILD_INDEX) {
+            done = true;
+        }
+        return name;
+    }
+
+    private String getAttribute(String attributeName) {
+        int i = 0;
+        int length = tag.length();
+        while (i < length && !isTagNameEnd(tag.charAt(i))) {
+            i++;
+        }
+        while (i < length) {
+            while (i < length && (Character.isWhitespace(tag.charAt(i)) || tag.charAt(i) == '/')) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < length && tag.charAt(i) != '=' && !isTagNameEnd(tag.charAt(i))) {
+                i++;
+            }
+            String name = tag.substring(nameStart, i);
+            while (i < length && Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            String value = "";
+            if (i < length && tag.charAt(i) == '=') {
+                i++;
+                while (i < length && Character.isWhitespace(tag.charAt(i))) {
+                    i++;
+                }
+                if (i < length && (tag.charAt(i) == '"' || tag.charAt(i) == '\'')) {
+                    char quote = tag.charAt(i++);
+                    int valueStart = i;
+                    while (i < length && tag.charAt(i) != quote) {
+                        i++;
+                    }
+                    value = tag.substring(valueStart, Math.min(i, length));
+                    i++;
+                } else {
+                    int valueStart = i;
+                    while (i < length && !isTagNameEnd(tag.charAt(i))) {
+                        i++;
+                    }
+                    value = tag.substring(valueStart, i);
+                }
+            }
+            if (name.equalsIgnoreCase(attributeName)) {
+                return value;
+            }
+            if (name.isEmpty()) {
+                i++;
+            }
+        }
+        return null;
+    }
+
+    private ByteArrayOutputStream currentText() {
+        if (openElements.size() < 2) {
+            return null;
+        }
+        if (childIndex == REVIEWS_CHILD_INDEX) {
+            return reviewsText;
+        }
+        if (childIndex == RATING_CHILD_INDEX) {
+            return ratingText;
+        }
+        return null;
+    }
+
+    private void writeSeparator() {
+        ByteArrayOutputStream text = currentText();
+        if (text != null) {
+            text.write(' ');
+        }
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> union = new HashSet<>(first);
+        union.addAll(second);
+        return Set.copyOf(union);
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    private static String normalize(ByteArrayOutputStream text) {
+        String decoded = Parser.unescapeEntities(text.toString(StandardCharsets.UTF_8), false);
+        return decoded.replaceAll("[\\s\\u00A0]+", " ").trim();
+    }
+
+}
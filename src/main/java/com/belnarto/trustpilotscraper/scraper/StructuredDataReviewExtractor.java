@@ -0,0 +1,227 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Incremental scanner for the aggregate rating which review pages embed as JSON-LD structured data. Only the
+ * {@code application/ld+json} script blocks are captured, each is parsed once it is complete, and the rating
+ * is only taken from an {@code Organization} or {@code LocalBusiness} node whose {@code url} or {@code sameAs}
+ * points at the domain requested, e.g. {@code https://www.trustpilot.com/review/example.com} or
+ * {@code http://www.example.com/}, as a page may carry the ratings of other businesses too. The structured data
+ * comes early in the head of the page, so the scan usually stops long before the business unit element. Not
+ * thread-safe, one instance is meant to be used for a single response.
+ */
+class StructuredDataReviewExtractor implements ReviewExtractor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final int MAX_BLOCK_LENGTH = 64 * 1024;
+
+    private static final Set<String> BUSINESS_TYPES = Set.of("Organization", "LocalBusiness");
+
+    private enum State {
+        MARKER,
+        TAG_END,
+        BLOCK
+    }
+
+    private final String domain;
+
+    private final BytePattern marker = new BytePattern("application/ld+json");
+    private final BytePattern scriptEnd = new BytePattern("</script");
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+    private State state = State.MARKER;
+
+    private ReviewDto review;
+
+    StructuredDataReviewExtractor(String domain) {
+        this.domain = normalizeHost(domain);
+    }
+
+    @Override
+    public boolean feed(ByteBuffer chunk) {
+        while (review == null && chunk.hasRemaining()) {
+            byte b = chunk.get();
+            switch (state) {
+                case MARKER:
+                    if (marker.matches(b)) {
+                        state = State.TAG_END;
+                    }
+                    break;
+                case TAG_END:
+                    if (b == '>') {
+                        block.reset();
+                        state = State.BLOCK;
+                    }
+                    break;
+                default:
+                    onBlock(b);
+            }
+        }
+        return review != null;
+    }
+
+    @Override
+    public Optional<ReviewDto> extract() {
+        return Optional.ofNullable(review);
+    }
+
+    private void onBlock(byte b) {
+        block.write(b);
+        if (scriptEnd.matches(b)) {
+            state = State.MARKER;
+            review = findReview(block.toByteArray(), block.size() - scriptEnd.length());
+        } else if (block.size() > MAX_BLOCK_LENGTH) {
+            // not the structured data expected, the scan goes on for another block
+            scriptEnd.reset();
+            state = State.MARKER;
+        }
+    }
+
+    private ReviewDto findReview(byte[] json, int length) {
+        try {
+            return findReview(OBJECT_MAPPER.readTree(json, 0, length));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Walks the whole tree, as the business may be nested in a {@code @graph} or in another node.
+     */
+    private ReviewDto findReview(JsonNode node) {
+        if (node.isObject() && isBusiness(node) && isOfDomain(node)) {
+            ReviewDto found = toReviewDto(node.path("aggregateRating"));
+            if (found != null) {
+                return found;
+            }
+        }
+        for (JsonNode child : node) {
+            ReviewDto found = findReview(child);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBusiness(JsonNode node) {
+        return anyText(node.path("@type"), BUSINESS_TYPES::contains);
+    }
+
+    private boolean isOfDomain(JsonNode node) {
+        return anyText(node.path("url"), this::isOfDomain) || anyText(node.path("sameAs"), this::isOfDomain);
+    }
+
+    private boolean isOfDomain(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        if (uri.getHost() != null && domain.equals(normalizeHost(uri.getHost()))) {
+            return true;
+        }
+        String path = uri.getPath();
+        return path != null && path.toLowerCase(Locale.ROOT).replaceAll("/+$", "").equals("/review/" + domain);
+    }
+
+    private static boolean anyText(JsonNode node, Predicate<String> predicate) {
+        if (node.isTextual()) {
+            return predicate.test(node.asText());
+        }
+        for (Iterator<JsonNode> values = node.elements(); values.hasNext(); ) {
+            JsonNode value = values.next();
+            if (value.isTextual() && predicate.test(value.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalizeHost(String host) {
+        String normalized = host.toLowerCase(Locale.ROOT);
+        return normalized.startsWith("www.") ? normalized.substring(4) : normalized;
+    }
+
+    private static ReviewDto toReviewDto(JsonNode aggregateRating) {
+        JsonNode reviewCount = aggregateRating.path("reviewCount");
+        JsonNode ratingValue = aggregateRating.path("ratingValue");
+        if (!reviewCount.isValueNode() || !ratingValue.isValueNode()) {
+            return null;
+        }
+
+        try {
+            return new ReviewDto(Integer.parseInt(reviewCount.asText()), Double.parseDouble(ratingValue.asText()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Matches a byte sequence fed one byte at a time, falling back on the longest prefix which is still matched
+     * after a mismatch.
+     */
+    private static final class BytePattern {
+
+        private final byte[] pattern;
+        private final int[] fallback;
+        private int matched;
+
+        private BytePattern(String pattern) {
+            this.pattern = pattern.getBytes(StandardCharsets.US_ASCII);
+            this.fallback = new int[this.pattern.length];
+            for (int i = 1, k = 0; i < this.pattern.length; i++) {
+                while (k > 0 && this.pattern[i] != this.pattern[k]) {
+                    k = fallback[k - 1];
+                }
+                if (this.pattern[i] == this.pattern[k]) {
+                    k++;
+                }
+                fallback[i] = k;
+            }
+        }
+
+        /**
+         * Returns true when the byte completes the sequence.
+         */
+        private boolean matches(byte b) {
+            while (matched > 0 && b != pattern[matched]) {
+                matched = fallback[matched - 1];
+            }
+            if (b == pattern[matched]) {
+                matched++;
+            }
+            if (matched == pattern.length) {
+                matched = 0;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            matched = 0;
+        }
+
+        private int length() {
+            return pattern.length;
+        }
+
+    }
+
+}
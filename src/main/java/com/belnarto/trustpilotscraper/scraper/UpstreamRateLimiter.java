@@ -0,0 +1,254 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Governs outbound requests to Trustpilot: a token bucket limits their rate, at most a fixed number of them
+ * may be in flight, and the rest waits in a bounded queue for a bounded time before being rejected.
+ * When Trustpilot answers with 429 or 503 all requests are paused for the time it asks for.
+ * Optionally the rate and the pauses are shared by the whole fleet through Redis. A request granted a local
+ * permit but not a fleet one gives its slot back and waits in the queue again, for what is left of its
+ * maximum wait time, while the local permits are held back for as long as the fleet asks.
+ */
+@Component
+@Slf4j
+public class UpstreamRateLimiter {
+
+    // the hash tag keeps both keys in the same Redis Cluster slot, as the permit script uses both
+    private static final String FLEET_WINDOW_KEY = "rate-limit:{trustpilot}:window";
+    private static final String FLEET_PAUSE_KEY = "rate-limit:{trustpilot}:paused";
+
+    /**
+     * Returns the number of milliseconds to wait before the next request may be sent by any instance.
+     */
+    private static final RedisScript<Long> FLEET_PERMIT_SCRIPT = RedisScript.of(
+        "local paused = redis.call('PTTL', KEYS[1]) "
+            + "if paused > 0 then return paused end "
+            + "local count = redis.call('INCR', KEYS[2]) "
+            + "if count == 1 then redis.call('PEXPIRE', KEYS[2], 1000) end "
+            + "if count > tonumber(ARGV[1]) then return math.max(redis.call('PTTL', KEYS[2]), 1) end "
+            + "return 0",
+        Long.class);
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final int maxInFlight;
+    private final Duration maxQueueWait;
+    private final Duration defaultBackOff;
+    private final boolean distributed;
+    private final long fleetPermitsPerSec;
+
+    private final PermitQueue queue;
+
+    // guarded by this
+    private int inFlight;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilNanos = lastRefillNanos;
+    private boolean drainScheduled;
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public UpstreamRateLimiter(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+        @Value("${trustpilot.rate-limit.permits-per-sec}") double permitsPerSec,
+        @Value("${trustpilot.rate-limit.burst}") int burst,
+        @Value("${trustpilot.rate-limit.max-in-flight}") int maxInFlight,
+        @Value("${trustpilot.rate-limit.max-queue-size}") int maxQueueSize,
+        @Value("${trustpilot.rate-limit.max-queue-wait-ms}") long maxQueueWaitMs,
+        @Value("${trustpilot.rate-limit.default-back-off-ms}") long defaultBackOffMs,
+        @Value("${trustpilot.rate-limit.distributed}") boolean distributed,
+        @Value("${trustpilot.rate-limit.fleet-permits-per-sec}") long fleetPermitsPerSec) {
+
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.permitsPerNano = permitsPerSec / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.maxInFlight = maxInFlight;
+        this.maxQueueWait = Duration.ofMillis(maxQueueWaitMs);
+        this.queue = new PermitQueue(maxQueueSize, maxQueueWait, this::drain);
+        this.defaultBackOff = Duration.ofMillis(defaultBackOffMs);
+        this.distributed = distributed;
+        this.fleetPermitsPerSec = fleetPermitsPerSec;
+    }
+
+    /**
+     * Subscribes to the call once a permit is available. Fails with {@link ScrapingUnavailableException}
+     * if the queue is full or the permit is not granted within the maximum queue wait time.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return execute(Mono.defer(call), maxQueueWait);
+    }
+
+    private <T> Mono<T> execute(Mono<T> call, Duration maxWait) {
+        if (maxWait.isZero() || maxWait.isNegative()) {
+            return Mono.error(this::expired);
+        }
+
+        long enqueuedAtNanos = System.nanoTime();
+        Supplier<Mono<T>> permitted = () -> (distributed ? acquireFleetPermit().then(call) : call)
+            .doFinally(signal -> {
+                release();
+                drain();
+            });
+        return queue.enqueue(permitted, maxWait, () -> reject("Too many pending requests to Trustpilot"),
+                this::expired)
+            .onErrorResume(FleetPermitDelayed.class, e ->
+                execute(call, maxWait.minusNanos(System.nanoTime() - enqueuedAtNanos)));
+    }
+
+    /**
+     * Stops granting permits for the given time, e.g. as requested by a Retry-After header.
+     */
+    public void pause(Duration duration) {
+        Duration pause = duration == null ? defaultBackOff : duration;
+        log.debug("Pausing requests to Trustpilot for " + pause);
+        synchronized (this) {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + pause.toNanos());
+        }
+        if (distributed && !pause.isZero() && !pause.isNegative()) {
+            reactiveStringRedisTemplate.opsForValue().set(FLEET_PAUSE_KEY, "", pause)
+                .subscribe(null, e -> log.debug("Could not share the pause with the fleet", e));
+        }
+        drain();
+    }
+
+    /**
+     * Tells whether a request could be sent now without delaying the live ones: nothing is queued, and at least
+     * half of the in-flight slots and half of the burst are left to them.
+     */
+    public synchronized boolean hasSpareCapacity() {
+        return queue.isEmpty() && inFlight < maxInFlight / 2
+            && nanosUntilPermit(System.nanoTime()) == 0 && tokens >= burst / 2;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    private void drain() {
+        List<PermitQueue.Waiter<?>> granted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < maxInFlight && !queue.isEmpty()) {
+                long now = System.nanoTime();
+                long delayNanos = nanosUntilPermit(now);
+                if (delayNanos > 0) {
+                    scheduleDrain(delayNanos);
+                    break;
+                }
+
+                PermitQueue.Waiter<?> waiter = queue.poll();
+                if (waiter == null) {
+                    break;
+                }
+                tokens -= 1;
+                inFlight++;
+                acquiredCount.incrementAndGet();
+                totalWaitNanos.addAndGet(now - waiter.getEnqueuedAtNanos());
+                granted.add(waiter);
+            }
+        }
+        granted.forEach(PermitQueue.Waiter::run);
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    private ScrapingUnavailableException expired() {
+        return reject("Request to Trustpilot was not permitted within " + maxQueueWait.toMillis() + " ms");
+    }
+
+    private ScrapingUnavailableException reject(String message) {
+        rejectedCount.incrementAndGet();
+        return new ScrapingUnavailableException(message);
+    }
+
+    private long nanosUntilPermit(long now) {
+        if (now < pausedUntilNanos) {
+            return pausedUntilNanos - now;
+        }
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        Schedulers.parallel().schedule(() -> {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Fails with {@link FleetPermitDelayed} if the fleet has no permit left for now, holding back the local
+     * permits until it has.
+     */
+    private Mono<Void> acquireFleetPermit() {
+        return reactiveStringRedisTemplate
+            .execute(FLEET_PERMIT_SCRIPT, List.of(FLEET_PAUSE_KEY, FLEET_WINDOW_KEY),
+                List.of(String.valueOf(fleetPermitsPerSec)))
+            .next()
+            .onErrorResume(e -> {
+                log.debug("Could not acquire fleet permit, proceeding with the local one", e);
+                return Mono.just(0L);
+            })
+            .flatMap(waitMillis -> {
+                if (waitMillis <= 0) {
+                    return Mono.empty();
+                }
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                synchronized (this) {
+                    pausedUntilNanos = Math.max(pausedUntilNanos, until);
+                }
+                return Mono.error(new FleetPermitDelayed());
+            });
+    }
+
+    private static final class FleetPermitDelayed extends RuntimeException {
+
+        private FleetPermitDelayed() {
+            super("The fleet has no permit left for now", null, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Validators Trustpilot sent with a review page, which let a later request for the page be answered with
+ * 304 Not Modified instead of the whole page if it has not changed meanwhile.
+ */
+@Value
+public class UpstreamValidators {
+
+    public static final UpstreamValidators NONE = new UpstreamValidators(null, null);
+
+    String etag;
+
+    String lastModified;
+
+    static UpstreamValidators of(HttpHeaders headers) {
+        String etag = headers.getETag();
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        return new UpstreamValidators(hasText(etag) ? etag : null, hasText(lastModified) ? lastModified : null);
+    }
+
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+
+    /**
+     * Returns these validators with the ones missing replaced by the given ones.
+     */
+    public UpstreamValidators orElse(UpstreamValidators other) {
+        return new UpstreamValidators(etag != null ? etag : other.etag,
+            lastModified != null ? lastModified : other.lastModified);
+    }
+
+    void applyTo(HttpHeaders headers) {
+        if (etag != null) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.belnarto.trustpilotscraper.serializer;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Writes cached reviews either as JSON or in a compact binary layout, and reads both, so the format can be
+ * switched without flushing Redis.
+ *
+ * <p>The binary layout is a magic byte, a version byte and big-endian fields:
+ * reviews count (int), rating (double, NaN for none) and cached at (long), which is version 1, followed in
+ * version 2 by the length of the rendered response (int, -1 for none) and the response itself, and in
+ * version 3 by the ETag and the Last-Modified validators of the page, each as length (int, -1 for none) and UTF-8.
+ * New fields are only ever appended, and readers ignore the bytes they do not know, so a version can be
+ * rolled out while older instances are still reading.
+ */
+public class CachedReviewRedisSerializer implements RedisSerializer<CachedReview> {
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte VERSION = 3;
+
+    private static final int V1_LENGTH = 2 + Integer.BYTES + Double.BYTES + Long.BYTES;
+    private static final int V2_LENGTH = V1_LENGTH + Integer.BYTES;
+    private static final int V3_LENGTH = V2_LENGTH + 2 * Integer.BYTES;
+
+    private final RedisValueFormat writeFormat;
+    private final RedisSerializer<CachedReview> jsonSerializer;
+
+    public CachedReviewRedisSerializer(RedisValueFormat writeFormat, RedisSerializer<CachedReview> jsonSerializer) {
+        this.writeFormat = writeFormat;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(CachedReview cachedReview) throws SerializationException {
+        if (cachedReview == null) {
+            return null;
+        }
+        if (writeFormat == RedisValueFormat.JSON) {
+            return jsonSerializer.serialize(cachedReview);
+        }
+
+        Double rating = cachedReview.getRating();
+        byte[] response = cachedReview.getResponse();
+        byte[] etag = toBytes(cachedReview.getEtag());
+        byte[] lastModified = toBytes(cachedReview.getLastModified());
+        ByteBuffer buffer = ByteBuffer.allocate(V3_LENGTH + length(response) + length(etag) + length(lastModified))
+            .put(MAGIC)
+            .put(VERSION)
+            .putInt(cachedReview.getReviewsCount())
+            .putDouble(rating == null ? Double.NaN : rating)
+            .putLong(cachedReview.getCachedAt());
+        putBytes(buffer, response);
+        putBytes(buffer, etag);
+        putBytes(buffer, lastModified);
+        return buffer.array();
+    }
+
+    @Override
+    public CachedReview deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return jsonSerializer.deserialize(bytes);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        byte version = buffer.get();
+        if (version < 1) {
+            throw new SerializationException("Unknown cached review version: " + version);
+        }
+        try {
+            int reviewsCount = buffer.getInt();
+            double rating = buffer.getDouble();
+            long cachedAt = buffer.getLong();
+            byte[] response = version >= 2 ? getBytes(buffer) : null;
+            String etag = version >= 3 ? toString(getBytes(buffer)) : null;
+            String lastModified = version >= 3 ? toString(getBytes(buffer)) : null;
+            return new CachedReview(reviewsCount, Double.isNaN(rating) ? null : rating, cachedAt, response,
+                etag, lastModified);
+        } catch (BufferUnderflowException e) {
+            throw new SerializationException("Cached review is truncated: " + bytes.length + " bytes", e);
+        }
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toString(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
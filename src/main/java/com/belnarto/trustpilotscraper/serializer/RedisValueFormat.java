@@ -0,0 +1,8 @@
+package com.belnarto.trustpilotscraper.serializer;
+
+public enum RedisValueFormat {
+
+    JSON,
+    BINARY
+
+}
@@ -0,0 +1,44 @@
+package com.belnarto.trustpilotscraper.serializer;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Renders the review response body with the same object mapper the web layer uses, so a body rendered
+ * once at scrape time is byte-identical to the one Jackson would write for every request.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReviewResponseRenderer {
+
+    private final ObjectMapper objectMapper;
+
+    public byte[] render(ReviewDto review) {
+        try {
+            return objectMapper.writeValueAsBytes(review);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Review could not be rendered", e);
+        }
+    }
+
+    /**
+     * Returns the body rendered at scrape time, or renders it now for entries cached without one.
+     */
+    public byte[] getResponse(CachedReview cachedReview) {
+        byte[] response = cachedReview.getResponse();
+        return response != null ? response : render(cachedReview.toReviewDto());
+    }
+
+    /**
+     * Returns a strong entity tag of the rendered body, which changes exactly when the body does.
+     */
+    public String getEtag(byte[] response) {
+        return "\"" + DigestUtils.md5DigestAsHex(response) + "\"";
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.cache.ReviewSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Fills the caches on startup, so that a freshly deployed instance, or the fleet after Redis was flushed, does
+ * not send all its traffic to Trustpilot at once. The domains come from the configured list and from the
+ * snapshot written periodically before the restart, which holds the reviews of the hot domains as cached in
+ * Redis at the time.
+ * Reviews from the snapshot are put straight into the caches if still fresh, everything else is looked up as a
+ * request would, with bounded concurrency. The instance reports itself ready once the configured share of
+ * the domains is processed, or once the maximum warm-up time has passed, whichever happens first.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheWarmUp implements HealthIndicator {
+
+    private final ReviewService reviewService;
+    private final ReviewSnapshot reviewSnapshot;
+    private final HotDomainTracker hotDomainTracker;
+    private final ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate;
+
+    private static final Duration SNAPSHOT_ON_STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private final AtomicInteger restoredCount = new AtomicInteger();
+    private final AtomicLong startedAtMillis = new AtomicLong();
+    private volatile boolean finished;
+
+    @Value("${trustpilot.warm-up.enabled}")
+    private boolean enabled;
+
+    @Value("${trustpilot.warm-up.domains-file}")
+    private String domainsFile;
+
+    @Value("${trustpilot.warm-up.max-concurrency}")
+    private int maxConcurrency;
+
+    @Value("${trustpilot.warm-up.ready-threshold}")
+    private double readyThreshold;
+
+    @Value("${trustpilot.warm-up.max-duration-sec}")
+    private long maxDurationSec;
+
+    @Value("${trustpilot.warm-up.snapshot-interval-sec}")
+    private long snapshotIntervalSec;
+
+    @EventListener(ApplicationStartedEvent.class)
+    void start() {
+        startedAtMillis.set(System.currentTimeMillis());
+        if (!enabled) {
+            finished = true;
+            return;
+        }
+
+        subscriptions.add(Mono.fromCallable(this::readSnapshot)
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMapMany(this::warmUp)
+            .doFinally(signal -> {
+                finished = true;
+                log.info("Cache warm-up finished: " + processedCount + " of " + totalCount + " domains processed, "
+                    + restoredCount + " restored from the snapshot");
+            })
+            .subscribe(null, e -> log.warn("Cache warm-up failed", e)));
+
+        if (reviewSnapshot.isEnabled()) {
+            subscriptions.add(Flux.interval(Duration.ofSeconds(snapshotIntervalSec))
+                .onBackpressureDrop()
+                .filter(tick -> finished)
+                .concatMap(tick -> writeSnapshot(), 1)
+                .subscribe());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        subscriptions.dispose();
+        if (enabled && finished && reviewSnapshot.isEnabled()) {
+            writeSnapshot().block(SNAPSHOT_ON_STOP_TIMEOUT);
+        }
+    }
+
+    public boolean isWarm() {
+        int total = totalCount.get();
+        long startedAt = startedAtMillis.get();
+        return finished
+            || total > 0 && processedCount.get() >= readyThreshold * total
+            || startedAt > 0 && System.currentTimeMillis() - startedAt >= maxDurationSec * 1000;
+    }
+
+    /**
+     * Included in the readiness group, so the instance receives no traffic until it is warm.
+     */
+    @Override
+    public Health health() {
+        Health.Builder builder = isWarm() ? Health.up() : Health.outOfService();
+        return builder
+            .withDetail("total", totalCount.get())
+            .withDetail("processed", processedCount.get())
+            .withDetail("restored", restoredCount.get())
+            .build();
+    }
+
+    private Flux<CachedReview> warmUp(Map<String, CachedReview> snapshot) {
+        Set<String> domains = new LinkedHashSet<>(snapshot.keySet());
+        domains.addAll(readDomains());
+        totalCount.set(domains.size());
+        log.info("Warming up the cache with " + domains.size() + " domains");
+
+        return Flux.fromIterable(domains)
+            .flatMap(domain -> warmUp(domain, snapshot.get(domain))
+                    .onErrorResume(e -> {
+                        log.debug("Warm-up failed for domain: " + domain, e);
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> processedCount.incrementAndGet()),
+                maxConcurrency);
+    }
+
+    private Mono<CachedReview> warmUp(String domain, CachedReview snapshotReview) {
+        if (snapshotReview == null) {
+            return reviewService.warmUp(domain);
+        }
+        return reviewService.restore(domain, snapshotReview)
+            .filter(restored -> restored)
+            .map(restored -> {
+                restoredCount.incrementAndGet();
+                return snapshotReview;
+            })
+            .switchIfEmpty(Mono.defer(() -> reviewService.warmUp(domain)));
+    }
+
+    private Map<String, CachedReview> readSnapshot() {
+        if (!reviewSnapshot.isEnabled()) {
+            return Map.of();
+        }
+        try {
+            return reviewSnapshot.read();
+        } catch (IOException e) {
+            log.warn("Could not read the review snapshot", e);
+            return Map.of();
+        }
+    }
+
+    private Set<String> readDomains() {
+        if (!hasText(domainsFile)) {
+            return Set.of();
+        }
+        try (Stream<String> lines = Files.lines(Path.of(domainsFile))) {
+            return lines
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        } catch (IOException e) {
+            log.warn("Could not read the warm-up domains from " + domainsFile, e);
+            return Set.of();
+        }
+    }
+
+    private Mono<Void> writeSnapshot() {
+        return hotDomainTracker.getHotDomains()
+            .filter(domains -> !domains.isEmpty())
+            .flatMap(domains -> reactiveRedisTemplate.opsForValue().multiGet(domains)
+                .map(cachedReviews -> toSnapshot(domains, cachedReviews)))
+            .flatMap(snapshot -> Mono.fromCallable(() -> {
+                reviewSnapshot.write(snapshot);
+                return snapshot;
+            }).subscribeOn(Schedulers.boundedElastic()))
+            .onErrorResume(e -> {
+                log.warn("Could not write the review snapshot", e);
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    private static Map<String, CachedReview> toSnapshot(List<String> domains, List<CachedReview> cachedReviews) {
+        Map<String, CachedReview> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < domains.size(); i++) {
+            if (cachedReviews.get(i) != null) {
+                snapshot.put(domains.get(i), cachedReviews.get(i));
+            }
+        }
+        return snapshot;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.belnarto.trustpilotscraper.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed size frequency table which never underestimates: each key is counted in one cell of every row and
+ * its estimate is the smallest of those cells. Increments are conservative, only the cells holding the
+ * current minimum are raised, which keeps the overestimation of rare keys small. Safe for concurrent use.
+ */
+class CountMinSketch {
+
+    static final int MAX_DEPTH = 6;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1, 0xD3A2646B};
+
+    private final int depth;
+    private final int widthMask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param width number of cells per row, rounded up to a power of two
+     * @param depth number of rows, at most {@value #MAX_DEPTH}
+     */
+    CountMinSketch(int width, int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        }
+        int roundedWidth = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.widthMask = roundedWidth - 1;
+        this.counters = new AtomicIntegerArray(roundedWidth * depth);
+    }
+
+    /**
+     * Counts one more occurrence of the key.
+     *
+     * @return the estimated number of occurrences including this one
+     */
+    int increment(Object key) {
+        int hash = spread(key.hashCode());
+        int[] indexes = new int[depth];
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            indexes[row] = index(hash, row);
+            min = Math.min(min, counters.get(indexes[row]));
+        }
+        if (min == Integer.MAX_VALUE) {
+            return min;
+        }
+        int estimate = min + 1;
+        for (int index : indexes) {
+            int current = counters.get(index);
+            while (current < estimate && !counters.compareAndSet(index, current, estimate)) {
+                current = counters.get(index);
+            }
+        }
+        return estimate;
+    }
+
+    int estimate(Object key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(hash, row)));
+        }
+        return min;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        return row * (widthMask + 1) + ((h ^ (h >>> 16)) & widthMask);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+}
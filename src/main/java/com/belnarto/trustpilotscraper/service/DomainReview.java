@@ -0,0 +1,26 @@
+package com.belnarto.trustpilotscraper.service;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import lombok.Value;
+
+/**
+ * Outcome of a review lookup for a single domain of a batch, either the review or the error it failed with.
+ */
+@Value
+public class DomainReview {
+
+    String domain;
+
+    ReviewDto review;
+
+    Throwable error;
+
+    public static DomainReview found(String domain, ReviewDto review) {
+        return new DomainReview(domain, review, null);
+    }
+
+    public static DomainReview failed(String domain, Throwable error) {
+        return new DomainReview(domain, null, error);
+    }
+
+}
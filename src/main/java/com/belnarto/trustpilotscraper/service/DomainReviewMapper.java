@@ -0,0 +1,54 @@
+package com.belnarto.trustpilotscraper.service;
+
+import com.belnarto.trustpilotscraper.dto.DomainReviewDto;
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Turns review lookups into what the clients get to see, for the endpoints as well as for the results of
+ * scrape jobs. Unexpected errors are reported with the default message only.
+ */
+@Component
+@Slf4j
+public class DomainReviewMapper {
+
+    @Value("${trustpilot.default-error-message}")
+    private String defaultErrorMessage;
+
+    public DomainReviewDto toDomainReviewDto(DomainReview domainReview) {
+        if (domainReview.getError() == null) {
+            return new DomainReviewDto(domainReview.getDomain(), HttpStatus.OK.value(), domainReview.getReview(), null);
+        }
+
+        HttpStatus status = toHttpStatus(domainReview.getDomain(), domainReview.getError());
+        return new DomainReviewDto(domainReview.getDomain(), status.value(), null,
+            toErrorMessage(status, domainReview.getError()));
+    }
+
+    public HttpStatus toHttpStatus(String domain, Throwable e) {
+        if (e instanceof ReviewNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (e instanceof ScrapingUnavailableException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (e instanceof ResponseStatusException) {
+            return ((ResponseStatusException) e).getStatus();
+        }
+        log.debug("Unexpected error occurred for domain: " + domain, e);
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    public String toErrorMessage(HttpStatus status, Throwable e) {
+        if (status == HttpStatus.INTERNAL_SERVER_ERROR) {
+            return defaultErrorMessage;
+        }
+        return e instanceof ResponseStatusException ? ((ResponseStatusException) e).getReason() : e.getMessage();
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.belnarto.trustpilotscraper.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Finds the most requested domains without keeping a counter per domain: accesses are counted in a
+ * count-min sketch and only the top K domains by estimated count are remembered. The local counts are
+ * periodically flushed into a sorted set in Redis per time window, so every instance sees the ranking of the
+ * whole fleet. The previous window is read too, so the ranking doesn't start from scratch on window change.
+ */
+@Component
+@Slf4j
+public class HotDomainTracker {
+
+    private static final String WINDOW_KEY_PREFIX = "popularity:domains:";
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final int topK;
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final Duration window;
+
+    private volatile Counts counts;
+    private volatile List<String> lastFlushedTopDomains = List.of();
+
+    public HotDomainTracker(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+        @Value("${trustpilot.popularity.top-k}") int topK,
+        @Value("${trustpilot.popularity.sketch-width}") int sketchWidth,
+        @Value("${trustpilot.popularity.sketch-depth}") int sketchDepth,
+        @Value("${trustpilot.popularity.window-sec}") long windowSec) {
+
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.window = Duration.ofSeconds(windowSec);
+        this.counts = new Counts();
+    }
+
+    public void recordAccess(String domain) {
+        counts.record(domain);
+    }
+
+    /**
+     * Returns the top domains counted by this instance since the last flush, the most requested first.
+     */
+    public List<String> getLocalTopDomains() {
+        return counts.topDomains();
+    }
+
+    /**
+     * Starts counting from scratch locally and adds the counts so far to the current window in Redis.
+     */
+    public Mono<Void> flush() {
+        Counts flushed = counts;
+        counts = new Counts();
+        Map<String, Integer> estimates = flushed.estimates();
+        if (estimates.isEmpty()) {
+            return Mono.empty();
+        }
+        lastFlushedTopDomains = flushed.topDomains();
+
+        String key = WINDOW_KEY_PREFIX + currentWindow();
+        return Flux.fromIterable(estimates.entrySet())
+            .flatMap(entry -> reactiveStringRedisTemplate.opsForZSet()
+                .incrementScore(key, entry.getKey(), entry.getValue()))
+            .then(reactiveStringRedisTemplate.expire(key, window.multipliedBy(2)))
+            .then();
+    }
+
+    /**
+     * Returns the top domains of the whole fleet over the current and the previous window, the most requested
+     * first. Falls back to the top domains of this instance if Redis is not available.
+     */
+    public Mono<List<String>> getHotDomains() {
+        long currentWindow = currentWindow();
+        Range<Long> top = Range.closed(0L, topK - 1L);
+        return Flux.just(WINDOW_KEY_PREFIX + currentWindow, WINDOW_KEY_PREFIX + (currentWindow - 1))
+            .flatMap(key -> reactiveStringRedisTemplate.opsForZSet().reverseRangeWithScores(key, top))
+            .collect(Collectors.toMap(TypedTuple::getValue, TypedTuple::getScore, Double::sum))
+            .map(scores -> scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()))
+            .onErrorResume(e -> {
+                log.debug("Could not read hot domains of the fleet, using the local ones", e);
+                return Mono.just(lastFlushedTopDomains);
+            });
+    }
+
+    private long currentWindow() {
+        return System.currentTimeMillis() / window.toMillis();
+    }
+
+    private final class Counts {
+
+        private final CountMinSketch sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        private final Map<String, Integer> candidates = new ConcurrentHashMap<>();
+
+        // guarded by this
+        private int threshold;
+
+        private void record(String domain) {
+            int estimate = sketch.increment(domain);
+            if (candidates.computeIfPresent(domain, (key, previous) -> Math.max(previous, estimate)) != null) {
+                return;
+            }
+            synchronized (this) {
+                if (candidates.size() < topK) {
+                    candidates.put(domain, estimate);
+                    threshold = candidates.size() < topK ? 0 : minCandidate().getValue();
+                } else if (estimate > threshold) {
+                    candidates.remove(minCandidate().getKey());
+                    candidates.put(domain, estimate);
+                    threshold = minCandidate().getValue();
+                }
+            }
+        }
+
+        private Map.Entry<String, Integer> minCandidate() {
+            return candidates.entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .orElseThrow();
+        }
+
+        private Map<String, Integer> estimates() {
+            return candidates.keySet().stream()
+                .collect(Collectors.toMap(domain -> domain, sketch::estimate));
+        }
+
+        private List<String> topDomains() {
+            return estimates().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        }
+
+    }
+
+}
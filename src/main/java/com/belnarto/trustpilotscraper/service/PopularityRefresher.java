@@ -0,0 +1,149 @@
+package com.belnarto.trustpilotscraper.service;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.scraper.UpstreamRateLimiter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Re-scrapes the most requested domains shortly before their cached reviews become stale, so they don't
+ * periodically miss. At most a fixed number of domains is refreshed per interval, and only while the
+ * rate limiter has spare capacity and the circuit breaker is closed, so refreshing never competes with
+ * live misses. Refreshes go through the {@link ScrapLease}, so only one instance of the fleet scrapes a domain
+ * and the others pick up its result.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PopularityRefresher {
+
+    private final HotDomainTracker hotDomainTracker;
+    private final ReviewService reviewService;
+    private final ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate;
+    private final UpstreamRateLimiter upstreamRateLimiter;
+    private final CircuitBreaker scraperCircuitBreaker;
+
+    private final AtomicLong refreshedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @Value("${trustpilot.popularity.enabled}")
+    private boolean enabled;
+
+    @Value("${trustpilot.popularity.refresh-interval-sec}")
+    private long refreshIntervalSec;
+
+    @Value("${trustpilot.popularity.refresh-before-sec}")
+    private long refreshBeforeSec;
+
+    @Value("${trustpilot.popularity.max-refreshes-per-interval}")
+    private int maxRefreshesPerInterval;
+
+    @Value("${trustpilot.cache-ttl-sec}")
+    private long cacheTtlSec;
+
+    @Value("${trustpilot.cache-soft-ttl-sec}")
+    private long cacheSoftTtlSec;
+
+    private Disposable refreshSubscription;
+
+    @PostConstruct
+    void startRefreshing() {
+        if (!enabled) {
+            return;
+        }
+        refreshSubscription = Flux.interval(Duration.ofSeconds(refreshIntervalSec))
+            .onBackpressureDrop()
+            .concatMap(tick -> refreshHotDomains()
+                .onErrorResume(e -> {
+                    log.debug("Refreshing hot domains failed", e);
+                    return Mono.empty();
+                }), 1)
+            .subscribe();
+    }
+
+    @PreDestroy
+    void stopRefreshing() {
+        if (refreshSubscription != null) {
+            refreshSubscription.dispose();
+        }
+    }
+
+    /**
+     * Publishes the local access counts and refreshes the hot domains of the fleet which are about to expire.
+     */
+    Mono<Void> refreshHotDomains() {
+        return hotDomainTracker.flush()
+            .onErrorResume(e -> {
+                log.debug("Could not share domain access counts with the fleet", e);
+                return Mono.empty();
+            })
+            .then(hotDomainTracker.getHotDomains())
+            .filter(domains -> !domains.isEmpty() && scraperCircuitBreaker.getState() == CircuitBreaker.State.CLOSED)
+            .flatMap(domains -> reactiveRedisTemplate.opsForValue().multiGet(domains)
+                .map(cachedReviews -> selectExpiring(domains, cachedReviews)))
+            .flatMapMany(expiring -> Flux.fromIterable(expiring.entrySet()))
+            .concatMap(entry -> refreshIfSpareCapacity(entry.getKey(), entry.getValue()), 1)
+            .take(maxRefreshesPerInterval)
+            .then();
+    }
+
+    public long getRefreshedCount() {
+        return refreshedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Keeps the cached domains in order of popularity whose reviews become stale before the refresh ahead time.
+     * Domains not cached at all are left to live requests, since they have most likely failed to be scraped.
+     */
+    private Map<String, CachedReview> selectExpiring(List<String> domains, List<CachedReview> cachedReviews) {
+        long now = System.currentTimeMillis();
+        long refreshFromMillis = (Math.min(cacheSoftTtlSec, cacheTtlSec) - refreshBeforeSec) * 1000;
+        Map<String, CachedReview> expiring = new LinkedHashMap<>();
+        for (int i = 0; i < domains.size(); i++) {
+            CachedReview cachedReview = cachedReviews.get(i);
+            if (cachedReview != null && cachedReview.ageMillis(now) >= refreshFromMillis) {
+                expiring.put(domains.get(i), cachedReview);
+            }
+        }
+        return expiring;
+    }
+
+    /**
+     * Emits the domain if a refresh was attempted, or nothing if it was skipped.
+     */
+    private Mono<String> refreshIfSpareCapacity(String domain, CachedReview current) {
+        if (!upstreamRateLimiter.hasSpareCapacity()) {
+            return Mono.empty();
+        }
+        return reviewService.refresh(domain, current)
+            .doOnNext(refreshed -> {
+                refreshedCount.incrementAndGet();
+                log.debug("Refreshed hot domain: " + domain);
+            })
+            .doOnError(e -> {
+                failedCount.incrementAndGet();
+                log.debug("Refreshing hot domain failed: " + domain, e);
+            })
+            .thenReturn(domain)
+            .onErrorReturn(domain);
+    }
+
+}
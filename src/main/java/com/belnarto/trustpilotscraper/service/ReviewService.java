@@ -1,40 +1,307 @@
 package com.belnarto.trustpilotscraper.service;
 
+import static org.springframework.util.StringUtils.hasText;
+
+import com.belnarto.trustpilotscraper.cache.CacheTierStats;
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.cache.FailureCache;
+import com.belnarto.trustpilotscraper.cache.LocalReviewCache;
+import com.belnarto.trustpilotscraper.cache.RedisOperationTimer;
+import com.belnarto.trustpilotscraper.cache.ReviewWriteBatcher;
 import com.belnarto.trustpilotscraper.dto.ReviewDto;
 import com.belnarto.trustpilotscraper.scraper.ReviewScraper;
+import com.belnarto.trustpilotscraper.scraper.ScrapedReview;
+import com.belnarto.trustpilotscraper.scraper.UpstreamValidators;
+import com.belnarto.trustpilotscraper.serializer.ReviewResponseRenderer;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ReviewService {
 
     private final ReviewScraper reviewScraper;
-    private final ReactiveRedisTemplate<String, ReviewDto> reactiveRedisTemplate;
+    private final ReactiveRedisTemplate<String, CachedReview> reactiveRedisTemplate;
+    private final FailureCache failureCache;
+    private final LocalReviewCache localReviewCache;
+    private final MeterRegistry meterRegistry;
+    private final ReviewResponseRenderer reviewResponseRenderer;
+    private final HotDomainTracker hotDomainTracker;
+    private final ReviewWriteBatcher reviewWriteBatcher;
+    private final ScrapLease scrapLease;
+    private final ScrapAdmission scrapAdmission;
+
+    @Getter
+    private final SingleFlight<String, CachedReview> scrapFlight = new SingleFlight<>();
+
+    @Getter
+    private final CacheTierStats redisStats = new CacheTierStats();
+
+    private RedisOperationTimer getTimer;
+    private RedisOperationTimer setTimer;
+    private RedisOperationTimer multiGetTimer;
 
     @Value("${trustpilot.cache-ttl-sec}")
     private long cacheTtlSec;
 
+    @Value("${trustpilot.cache-soft-ttl-sec}")
+    private long cacheSoftTtlSec;
+
+    @Value("${trustpilot.cache-refresh-ahead-sec}")
+    private long cacheRefreshAheadSec;
+
+    @Value("${trustpilot.batch.max-concurrency}")
+    private int batchMaxConcurrency;
+
+    @PostConstruct
+    void registerTimers() {
+        getTimer = new RedisOperationTimer(meterRegistry, "get");
+        setTimer = new RedisOperationTimer(meterRegistry, "set");
+        multiGetTimer = new RedisOperationTimer(meterRegistry, "multi-get");
+    }
+
     public Mono<ReviewDto> getReviewByDomain(final String domain) {
-        return reactiveRedisTemplate.opsForValue().get(domain)
-            .switchIfEmpty(Mono.defer(() -> getReviewAndAddToCache(domain)));
+        return getCachedReviewByDomain(domain)
+            .map(CachedReview::toReviewDto);
+    }
+
+    /**
+     * Same as {@link #getReviewByDomain(String)}, but keeps the cache entry with the response body rendered
+     * at scrape time, so it can be written out as is.
+     */
+    public Mono<CachedReview> getCachedReviewByDomain(final String domain) {
+        hotDomainTracker.recordAccess(domain);
+        return getReview(domain, true);
+    }
+
+    /**
+     * Looks the review up exactly like {@link #getCachedReviewByDomain(String)}, filling the caches on the way,
+     * but without counting it as an access to the domain. Its callers bound their own concurrency, so a scrape
+     * is never shed by the admission control.
+     */
+    public Mono<CachedReview> warmUp(final String domain) {
+        return getReview(domain, false);
+    }
+
+    private Mono<CachedReview> getReview(String domain, boolean admissionControlled) {
+        return getReviewFromCaches(domain)
+            .doOnNext(cachedReview -> refreshInBackgroundIfNeeded(domain, cachedReview))
+            .switchIfEmpty(Mono.defer(() -> scrap(domain, admissionControlled)));
+    }
+
+    /**
+     * Requests joining a scrape already in flight share its admission, only the one starting it is admitted.
+     */
+    private Mono<CachedReview> scrap(String domain, boolean admissionControlled) {
+        return scrapFlight.execute(domain, admissionControlled
+            ? () -> scrapAdmission.execute(() -> getReviewUnlessFailed(domain))
+            : () -> getReviewUnlessFailed(domain));
+    }
+
+    /**
+     * Puts a review restored from a snapshot into the caches for the rest of its TTL, unless it has expired
+     * meanwhile or Redis already has a review for the domain.
+     *
+     * @return whether the review was restored
+     */
+    public Mono<Boolean> restore(final String domain, final CachedReview cachedReview) {
+        long remainingTtlMillis = cacheTtlSec * 1000 - cachedReview.ageMillis(System.currentTimeMillis());
+        if (remainingTtlMillis <= 0) {
+            return Mono.just(false);
+        }
+
+        Duration remainingTtl = Duration.ofMillis(remainingTtlMillis);
+        return setTimer.time(reactiveRedisTemplate.opsForValue().setIfAbsent(domain, cachedReview, remainingTtl))
+            .doOnNext(restored -> {
+                if (restored) {
+                    localReviewCache.put(domain, cachedReview, remainingTtl);
+                }
+            });
+    }
+
+    private Mono<CachedReview> getReviewFromCaches(String domain) {
+        CachedReview localReview = localReviewCache.get(domain);
+        if (localReview != null) {
+            return Mono.just(localReview);
+        }
+
+        return getTimer.time(reactiveRedisTemplate.opsForValue().get(domain))
+            .doOnNext(cachedReview -> onRedisHit(domain, cachedReview))
+            .switchIfEmpty(Mono.fromRunnable(redisStats::recordMiss));
+    }
+
+    /**
+     * Looks up reviews for all the given domains at once: local hits are emitted right away, the rest is read
+     * from Redis with a single multi-get, and only the domains missing there are scraped, with bounded
+     * concurrency. Each result is emitted as soon as it is ready, failures are emitted per domain.
+     */
+    public Flux<DomainReview> getReviewsByDomains(final Collection<String> domains) {
+        List<DomainReview> localHits = new ArrayList<>();
+        List<String> localMisses = new ArrayList<>();
+        for (String domain : new LinkedHashSet<>(domains)) {
+            if (!hasText(domain)) {
+                continue;
+            }
+            hotDomainTracker.recordAccess(domain);
+            CachedReview localReview = localReviewCache.get(domain);
+            if (localReview != null) {
+                refreshInBackgroundIfNeeded(domain, localReview);
+                localHits.add(DomainReview.found(domain, localReview.toReviewDto()));
+            } else {
+                localMisses.add(domain);
+            }
+        }
+
+        if (localMisses.isEmpty()) {
+            return Flux.fromIterable(localHits);
+        }
+
+        return Flux.fromIterable(localHits)
+            .concatWith(multiGetTimer.time(reactiveRedisTemplate.opsForValue().multiGet(localMisses))
+                .flatMapMany(cachedReviews -> {
+                    List<DomainReview> redisHits = new ArrayList<>();
+                    List<String> redisMisses = new ArrayList<>();
+                    for (int i = 0; i < localMisses.size(); i++) {
+                        String domain = localMisses.get(i);
+                        CachedReview cachedReview = cachedReviews.get(i);
+                        if (cachedReview != null) {
+                            onRedisHit(domain, cachedReview);
+                            refreshInBackgroundIfNeeded(domain, cachedReview);
+                            redisHits.add(DomainReview.found(domain, cachedReview.toReviewDto()));
+                        } else {
+                            redisStats.recordMiss();
+                            redisMisses.add(domain);
+                        }
+                    }
+                    return Flux.fromIterable(redisHits).concatWith(scrapAll(redisMisses));
+                }));
+    }
+
+    private Flux<DomainReview> scrapAll(List<String> domains) {
+        return Flux.fromIterable(domains)
+            .flatMap(domain -> scrap(domain, true)
+                    .map(cachedReview -> DomainReview.found(domain, cachedReview.toReviewDto()))
+                    .onErrorResume(e -> Mono.just(DomainReview.failed(domain, e))),
+                batchMaxConcurrency);
+    }
+
+    private void onRedisHit(String domain, CachedReview cachedReview) {
+        redisStats.recordHit();
+        long remainingTtlMillis = cacheTtlSec * 1000 - cachedReview.ageMillis(System.currentTimeMillis());
+        if (remainingTtlMillis > 0) {
+            localReviewCache.put(domain, cachedReview, Duration.ofMillis(remainingTtlMillis));
+        }
+    }
+
+    /**
+     * Past the soft TTL a cached review is still served, but gets refreshed in the background. Within the
+     * refresh-ahead window just before the soft TTL it is refreshed with a probability growing towards it,
+     * so hot domains are usually refreshed before they ever become stale. The window is expected to be much
+     * shorter than the soft TTL itself.
+     */
+    private void refreshInBackgroundIfNeeded(String domain, CachedReview cachedReview) {
+        long ageMillis = cachedReview.ageMillis(System.currentTimeMillis());
+        long softTtlMillis = cacheSoftTtlSec * 1000;
+        long refreshAheadMillis = cacheRefreshAheadSec * 1000;
+        long refreshAheadFromMillis = softTtlMillis - refreshAheadMillis;
+
+        boolean stale = ageMillis >= softTtlMillis;
+        boolean refreshAhead = !stale && refreshAheadMillis > 0 && ageMillis >= refreshAheadFromMillis
+            && ThreadLocalRandom.current().nextLong(refreshAheadMillis) < ageMillis - refreshAheadFromMillis;
+        if (!stale && !refreshAhead) {
+            return;
+        }
+
+        log.debug("Refreshing " + (stale ? "stale" : "expiring") + " review in background for domain: " + domain);
+        refresh(domain, cachedReview)
+            .subscribe(
+                refreshed -> log.debug("Refreshed review in background for domain: " + domain),
+                e -> log.debug("Background refresh failed for domain: " + domain, e));
+    }
+
+    /**
+     * Scrapes the domain again and caches the result, regardless of what is cached for it now. The page is only
+     * downloaded and parsed again if it has changed since the given review was scraped.
+     */
+    public Mono<CachedReview> refresh(String domain, CachedReview current) {
+        return scrapFlight.execute(domain, () -> scrapLease.execute(domain,
+            () -> getReviewAndAddToCache(domain, current),
+            () -> getReviewFromRedis(domain)
+                .filter(cachedReview -> cachedReview.getCachedAt() > current.getCachedAt())
+                .switchIfEmpty(Mono.defer(() -> getReviewAndAddToCache(domain, current)))));
     }
 
-    private Mono<ReviewDto> getReviewAndAddToCache(String domain) {
+    /**
+     * Only one instance of the fleet scrapes the domain at a time, the others take its result from Redis, or
+     * its failure from the failure cache. They only scrape themselves if it left neither behind.
+     */
+    private Mono<CachedReview> getReviewUnlessFailed(String domain) {
+        return getFailure(domain)
+            .switchIfEmpty(Mono.defer(() -> scrapLease.execute(domain,
+                () -> getReviewAndAddToCache(domain, null),
+                () -> getReviewFromRedis(domain)
+                    .switchIfEmpty(getFailure(domain))
+                    .switchIfEmpty(Mono.defer(() -> getReviewAndAddToCache(domain, null))))));
+    }
+
+    private Mono<CachedReview> getFailure(String domain) {
+        return failureCache.get(domain)
+            .flatMap(failureType -> Mono.error(failureType.toException(domain)));
+    }
+
+    private Mono<CachedReview> getReviewFromRedis(String domain) {
+        return getTimer.time(reactiveRedisTemplate.opsForValue().get(domain))
+            .doOnNext(cachedReview -> onRedisHit(domain, cachedReview));
+    }
+
+    /**
+     * Emits the review once it is written to Redis, or the failure once it is written to the failure cache,
+     * so the instances waiting for this one can read either there.
+     */
+    private Mono<CachedReview> getReviewAndAddToCache(String domain, CachedReview current) {
         try {
-            return reviewScraper.scrapForReviewByDomain(domain)
-                .map(response -> {
-                    reactiveRedisTemplate.opsForValue()
-                        .set(domain, response, Duration.ofSeconds(cacheTtlSec)).subscribe();
-                    return response;
-                });
+            UpstreamValidators validators = current == null ? UpstreamValidators.NONE : current.getValidators();
+            return reviewScraper.scrapForReviewByDomain(domain, validators)
+                .flatMap(scrapedReview -> {
+                    CachedReview cachedReview = toCachedReview(scrapedReview, current);
+                    Duration ttl = Duration.ofSeconds(cacheTtlSec);
+                    localReviewCache.put(domain, cachedReview, ttl);
+                    return reviewWriteBatcher.write(domain, cachedReview, ttl)
+                        .thenReturn(cachedReview);
+                })
+                .onErrorResume(e -> failureCache.put(domain, e)
+                    .onErrorResume(putError -> {
+                        log.debug("Could not cache failure for domain: " + domain, putError);
+                        return Mono.empty();
+                    })
+                    .then(Mono.error(e)));
         } catch (Throwable e) {
             return Mono.error(e);
         }
     }
 
+    private CachedReview toCachedReview(ScrapedReview scrapedReview, CachedReview current) {
+        long now = System.currentTimeMillis();
+        if (scrapedReview.isNotModified()) {
+            return current.revalidated(now, scrapedReview.getValidators());
+        }
+        ReviewDto review = scrapedReview.getReview();
+        return CachedReview.of(review, now, reviewResponseRenderer.render(review), scrapedReview.getValidators());
+    }
+
 }
@@ -0,0 +1,156 @@
+package com.belnarto.trustpilotscraper.service;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingOverloadedException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import com.belnarto.trustpilotscraper.scraper.PermitQueue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounds the number of requests which are served by scraping, as their review is in none of the caches.
+ * Cache hits never pass through here, so they keep being served under overload. Requests over the limit wait
+ * in a short bounded queue, and are shed with {@link ScrapingOverloadedException} once it is full or they have
+ * waited too long, so that clients retry later instead of timing out.
+ * <p>
+ * The limit adapts to the latency of the scrapes, the way TCP adapts its window: it grows by one per limit's
+ * worth of calls completing within the latency target while the limit is in use, and shrinks by a ratio when
+ * calls take longer or find the upstream unavailable, at most once per latency target.
+ */
+@Component
+public class ScrapAdmission {
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration maxQueueWait;
+    private final long latencyTargetNanos;
+    private final double backOffRatio;
+    private final Duration retryAfter;
+
+    private final PermitQueue queue;
+
+    // guarded by this
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong shedCount = new AtomicLong();
+
+    public ScrapAdmission(@Value("${trustpilot.admission.enabled}") boolean enabled,
+        @Value("${trustpilot.admission.initial-limit}") int initialLimit,
+        @Value("${trustpilot.admission.min-limit}") int minLimit,
+        @Value("${trustpilot.admission.max-limit}") int maxLimit,
+        @Value("${trustpilot.admission.max-queue-size}") int maxQueueSize,
+        @Value("${trustpilot.admission.max-queue-wait-ms}") long maxQueueWaitMs,
+        @Value("${trustpilot.admission.latency-target-ms}") long latencyTargetMs,
+        @Value("${trustpilot.admission.back-off-ratio}") double backOffRatio,
+        @Value("${trustpilot.admission.retry-after-sec}") long retryAfterSec) {
+
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueWait = Duration.ofMillis(maxQueueWaitMs);
+        this.queue = new PermitQueue(maxQueueSize, maxQueueWait, this::drain);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.backOffRatio = backOffRatio;
+        this.retryAfter = Duration.ofSeconds(retryAfterSec);
+    }
+
+    /**
+     * Subscribes to the call once it is admitted. Fails with {@link ScrapingOverloadedException} if the queue is
+     * full or the call is not admitted within the maximum queue wait time.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+
+        Supplier<Mono<T>> admitted = () -> {
+            long startedAtNanos = System.nanoTime();
+            return Mono.defer(call)
+                .doOnSuccess(value -> adapt(System.nanoTime() - startedAtNanos, false))
+                .doOnError(e -> adapt(System.nanoTime() - startedAtNanos,
+                    e instanceof ScrapingUnavailableException))
+                .doFinally(signal -> {
+                    release();
+                    drain();
+                });
+        };
+        // queued calls go first, a new one is only run right away by the drain if none is waiting
+        return queue.enqueue(admitted,
+            () -> shed("Too many reviews are being scraped, please retry later"),
+            () -> shed("Review could not be scraped within " + maxQueueWait.toMillis() + " ms, please retry later"));
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getQueuedCount() {
+        return queue.getQueuedCount();
+    }
+
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    private void drain() {
+        List<PermitQueue.Waiter<?>> admitted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                PermitQueue.Waiter<?> waiter = queue.poll();
+                if (waiter == null) {
+                    break;
+                }
+                inFlight++;
+                acceptedCount.incrementAndGet();
+                admitted.add(waiter);
+            }
+        }
+        admitted.forEach(PermitQueue.Waiter::run);
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    private synchronized void adapt(long latencyNanos, boolean overloaded) {
+        if (overloaded || latencyNanos > latencyTargetNanos) {
+            // the calls completing together after a slowdown are one signal, not one each
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * backOffRatio);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlight >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private ScrapingOverloadedException shed(String message) {
+        shedCount.incrementAndGet();
+        return new ScrapingOverloadedException(message, retryAfter);
+    }
+
+}
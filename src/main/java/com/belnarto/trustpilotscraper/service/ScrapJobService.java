@@ -0,0 +1,333 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.springframework.util.StringUtils.hasText;
+
+import com.belnarto.trustpilotscraper.dto.DomainReviewDto;
+import com.belnarto.trustpilotscraper.dto.ScrapJobDto;
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ReviewParsingException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.stream.StreamReceiver;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Scrapes long lists of domains in the background. A submitted job is split into one entry per domain on a
+ * Redis stream, which every instance consumes with bounded concurrency as a member of the same consumer group.
+ * Each domain is looked up as a request would, so its review ends up in the caches, then its outcome is
+ * appended to the results of the job and counted, and only then the entry is acknowledged. Entries failing
+ * transiently, e.g. while Trustpilot is unavailable, are left unacknowledged, as are the entries of an instance
+ * which died. They are claimed again after a while, and given up on after a number of deliveries. Entries are
+ * processed at least once, so an outcome may occasionally be counted twice. An instance keeps its consumer name
+ * across restarts, the host name by default, so the group does not collect a dead consumer per restart.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScrapJobService {
+
+    private static final String STREAM_KEY = "scrap-jobs";
+    private static final String CONSUMER_GROUP = "scrap-job-workers";
+    private static final String JOB_FIELD = "job";
+    private static final String DOMAIN_FIELD = "domain";
+    private static final String TOTAL_FIELD = "total";
+    private static final String SUCCEEDED_FIELD = "succeeded";
+    private static final String FAILED_FIELD = "failed";
+
+    private static final int SUBMIT_CONCURRENCY = 64;
+    private static final int CLAIM_MAX_PAGES = 10;
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+    private final ReviewService reviewService;
+    private final DomainReviewMapper domainReviewMapper;
+    private final ObjectMapper objectMapper;
+
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    @Value("${trustpilot.jobs.enabled}")
+    private boolean enabled;
+
+    @Value("${trustpilot.jobs.max-concurrency}")
+    private int maxConcurrency;
+
+    @Value("${trustpilot.jobs.ttl-hours}")
+    private long ttlHours;
+
+    @Value("${trustpilot.jobs.poll-timeout-ms}")
+    private long pollTimeoutMs;
+
+    @Value("${trustpilot.jobs.claim-interval-sec}")
+    private long claimIntervalSec;
+
+    @Value("${trustpilot.jobs.claim-min-idle-sec}")
+    private long claimMinIdleSec;
+
+    @Value("${trustpilot.jobs.max-deliveries}")
+    private long maxDeliveries;
+
+    @Value("${trustpilot.jobs.claim-batch-size}")
+    private int claimBatchSize;
+
+    @Value("${trustpilot.jobs.consumer-name}")
+    private String consumerName;
+
+    // where the next claim looks for pending entries from, null to start over from the oldest
+    private volatile RecordId claimCursor;
+
+    @EventListener(ApplicationStartedEvent.class)
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!hasText(consumerName)) {
+            consumerName = getHostName();
+        }
+        log.debug("Consuming scrap jobs as " + consumerName);
+
+        subscriptions.add(createGroup()
+            .thenMany(Flux.defer(this::receive))
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(signal -> log.debug("Resubscribing to scrap jobs", signal.failure())))
+            .subscribe());
+
+        subscriptions.add(Flux.interval(Duration.ofSeconds(claimIntervalSec))
+            .onBackpressureDrop()
+            .concatMap(tick -> claimAbandoned()
+                .onErrorResume(e -> {
+                    log.debug("Claiming abandoned scrap job entries failed", e);
+                    return Mono.empty();
+                }), 1)
+            .subscribe());
+    }
+
+    @PreDestroy
+    void stop() {
+        subscriptions.dispose();
+    }
+
+    public Mono<ScrapJobDto> submit(Collection<String> domains) {
+        List<String> jobDomains = domains.stream()
+            .filter(domain -> hasText(domain))
+            .distinct()
+            .collect(Collectors.toList());
+        String id = UUID.randomUUID().toString();
+
+        return reactiveStringRedisTemplate.<String, String>opsForHash()
+            .putAll(jobKey(id), Map.of(
+                TOTAL_FIELD, String.valueOf(jobDomains.size()),
+                SUCCEEDED_FIELD, "0",
+                FAILED_FIELD, "0"))
+            .then(reactiveStringRedisTemplate.expire(jobKey(id), Duration.ofHours(ttlHours)))
+            .thenMany(Flux.fromIterable(jobDomains)
+                .flatMap(domain -> reactiveStringRedisTemplate.<String, String>opsForStream()
+                    .add(STREAM_KEY, Map.of(JOB_FIELD, id, DOMAIN_FIELD, domain)), SUBMIT_CONCURRENCY))
+            .then(Mono.fromSupplier(() -> {
+                log.debug("Submitted scrap job " + id + " with " + jobDomains.size() + " domains");
+                return new ScrapJobDto(id, jobDomains.size(), 0, 0);
+            }));
+    }
+
+    public Mono<ScrapJobDto> getJob(String id) {
+        return reactiveStringRedisTemplate.<String, String>opsForHash().entries(jobKey(id))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .filter(fields -> !fields.isEmpty())
+            .map(fields -> new ScrapJobDto(id,
+                Integer.parseInt(fields.getOrDefault(TOTAL_FIELD, "0")),
+                Integer.parseInt(fields.getOrDefault(SUCCEEDED_FIELD, "0")),
+                Integer.parseInt(fields.getOrDefault(FAILED_FIELD, "0"))));
+    }
+
+    /**
+     * Returns the results of the job in the order the domains were processed in, each already rendered as JSON.
+     */
+    public Flux<String> getResults(String id, long offset, long limit) {
+        return reactiveStringRedisTemplate.opsForList().range(resultsKey(id), offset, offset + limit - 1);
+    }
+
+    private Mono<Void> createGroup() {
+        ByteBuffer key = reactiveStringRedisTemplate.getSerializationContext().getKeySerializationPair()
+            .write(STREAM_KEY);
+        return reactiveStringRedisTemplate
+            .execute(connection -> connection.streamCommands()
+                .xGroupCreate(key, CONSUMER_GROUP, ReadOffset.from("0"), true))
+            .then()
+            .onErrorResume(ScrapJobService::isGroupExisting, e -> Mono.empty());
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            log.warn("Could not resolve the host name, consuming scrap jobs under a random name", e);
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private static boolean isGroupExisting(Throwable e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.startsWith("BUSYGROUP");
+    }
+
+    private Flux<Void> receive() {
+        StreamReceiver.StreamReceiverOptions<String, MapRecord<String, String, String>> options =
+            StreamReceiver.StreamReceiverOptions.builder()
+                .pollTimeout(Duration.ofMillis(pollTimeoutMs))
+                .batchSize(maxConcurrency)
+                .build();
+
+        return StreamReceiver.create(reactiveRedisConnectionFactory, options)
+            .receive(Consumer.from(CONSUMER_GROUP, consumerName), StreamOffset.create(STREAM_KEY,
+                ReadOffset.lastConsumed()))
+            .flatMap(this::process, maxConcurrency);
+    }
+
+    /**
+     * Takes over the entries delivered to any consumer, this one included, which have not been acknowledged for
+     * too long, most likely as the instance died. Entries delivered too many times already are given up on.
+     * The pending entries are paged through from where the previous claim stopped, so the entries redelivered
+     * and failing again at the head of the list do not hide the ones behind them.
+     */
+    private Mono<Void> claimAbandoned() {
+        return claimAbandoned(Duration.ofSeconds(claimMinIdleSec), CLAIM_MAX_PAGES);
+    }
+
+    private Mono<Void> claimAbandoned(Duration minIdle, int pagesLeft) {
+        RecordId cursor = claimCursor;
+        Range<String> range = cursor == null
+            ? Range.unbounded()
+            : Range.rightUnbounded(Range.Bound.inclusive(cursor.getValue()));
+        return reactiveStringRedisTemplate.opsForStream()
+            .pending(STREAM_KEY, CONSUMER_GROUP, range, claimBatchSize)
+            .flatMap(page -> {
+                List<PendingMessage> idle = page.stream()
+                    .filter(pending -> pending.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                    .collect(Collectors.toList());
+                claimCursor = page.size() < claimBatchSize ? null : next(page.get(page.size() - 1).getId());
+
+                Mono<Void> claimed = Flux.fromIterable(idle)
+                    .flatMap(pending -> claim(pending, minIdle)
+                        .flatMap(record -> pending.getTotalDeliveryCount() >= maxDeliveries
+                            ? giveUp(record)
+                            : process(record)), maxConcurrency)
+                    .then();
+                // a tick claims up to a page of entries, looking through a bounded number of pages for them
+                return idle.size() < claimBatchSize && claimCursor != null && pagesLeft > 1
+                    ? claimed.then(Mono.defer(() -> claimAbandoned(minIdle, pagesLeft - 1)))
+                    : claimed;
+            });
+    }
+
+    private static RecordId next(RecordId id) {
+        return RecordId.of(id.getTimestamp(), id.getSequence() + 1);
+    }
+
+    private Mono<MapRecord<String, String, String>> claim(PendingMessage pending, Duration minIdle) {
+        ByteBuffer key = reactiveStringRedisTemplate.getSerializationContext().getKeySerializationPair()
+            .write(STREAM_KEY);
+        return reactiveStringRedisTemplate
+            .execute(connection -> connection.streamCommands()
+                .xClaim(key, CONSUMER_GROUP, consumerName, XClaimOptions.minIdle(minIdle).ids(pending.getId())))
+            .next()
+            .map(record -> {
+                log.debug("Claimed scrap job entry " + pending.getId() + " from " + pending.getConsumerName());
+                return record.deserialize(RedisSerializer.string());
+            });
+    }
+
+    private Mono<Void> process(MapRecord<String, String, String> record) {
+        String domain = record.getValue().get(DOMAIN_FIELD);
+        return reviewService.warmUp(domain)
+            .map(cachedReview -> DomainReview.found(domain, cachedReview.toReviewDto()))
+            .switchIfEmpty(Mono.fromSupplier(() -> DomainReview.failed(domain,
+                new ReviewNotFoundException("Review for domain: " + domain + " was not found"))))
+            .onErrorResume(ScrapJobService::isFinal, e -> Mono.just(DomainReview.failed(domain, e)))
+            .flatMap(domainReview -> complete(record, domainReviewMapper.toDomainReviewDto(domainReview)))
+            .onErrorResume(e -> {
+                log.debug("Scraping domain: " + domain + " failed, leaving scrap job entry " + record.getId()
+                    + " pending", e);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Only a review which is missing or malformed would fail the same way again. Anything else, e.g. Trustpilot
+     * being unavailable or timing out, is left to a later delivery of the entry.
+     */
+    private static boolean isFinal(Throwable e) {
+        return e instanceof ReviewNotFoundException || e instanceof ReviewParsingException;
+    }
+
+    private Mono<Void> giveUp(MapRecord<String, String, String> record) {
+        String domain = record.getValue().get(DOMAIN_FIELD);
+        log.debug("Giving up scrap job entry " + record.getId() + " for domain: " + domain);
+        return complete(record, domainReviewMapper.toDomainReviewDto(DomainReview.failed(domain,
+            new ScrapingUnavailableException("Review for domain: " + domain + " could not be scraped"))));
+    }
+
+    /**
+     * Records the outcome and acknowledges the entry. If that fails the entry stays pending, to be claimed again.
+     */
+    private Mono<Void> complete(MapRecord<String, String, String> record, DomainReviewDto result) {
+        String jobId = record.getValue().get(JOB_FIELD);
+        RecordId id = record.getId();
+        String countField = result.getReview() != null ? SUCCEEDED_FIELD : FAILED_FIELD;
+
+        // the outcome of an expired job is of no use, counting it would recreate the job without a TTL
+        return reactiveStringRedisTemplate.hasKey(jobKey(jobId))
+            .filter(Boolean::booleanValue)
+            .flatMap(jobExists -> Mono.fromCallable(() -> objectMapper.writeValueAsString(result)))
+            .flatMap(json -> reactiveStringRedisTemplate.opsForList().rightPush(resultsKey(jobId), json)
+                .then(reactiveStringRedisTemplate.expire(resultsKey(jobId), Duration.ofHours(ttlHours)))
+                .then(reactiveStringRedisTemplate.opsForHash().increment(jobKey(jobId), countField, 1)))
+            .then(reactiveStringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, CONSUMER_GROUP, id))
+            .then(reactiveStringRedisTemplate.opsForStream().delete(STREAM_KEY, id))
+            .then()
+            .onErrorResume(e -> {
+                log.debug("Could not complete scrap job entry " + id, e);
+                return Mono.empty();
+            });
+    }
+
+    private static String jobKey(String id) {
+        return "scrap-job:" + id;
+    }
+
+    private static String resultsKey(String id) {
+        return "scrap-job:" + id + ":results";
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.belnarto.trustpilotscraper.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+/**
+ * Makes sure only one instance of the fleet scrapes a domain at a time. The instance which gets the lease in
+ * Redis scrapes, the others wait until it announces on a pub/sub channel that it is done and then read the
+ * result from Redis. A lease expires on its own, so if its holder dies the others stop waiting and scrape
+ * themselves. Each lease holds a random token of its holder, and is only deleted if it still holds it, so a
+ * holder whose lease has expired meanwhile can not release the lease of the next one. If Redis is unavailable
+ * every instance just scrapes.
+ */
+@Component
+@Slf4j
+public class ScrapLease {
+
+    private static final String COMPLETION_CHANNEL = "scrap-completion";
+
+    private static final int ACQUIRED = 1;
+    private static final int HELD_BY_OTHER = 0;
+    private static final int NO_LEASE = -1;
+
+    /**
+     * Deletes the lease only if it still holds the token of the releasing instance.
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+            + "return 0",
+        Long.class);
+
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final boolean enabled;
+    private final Duration leaseTtl;
+
+    private final Map<String, Sinks.Empty<Void>> waiters = new ConcurrentHashMap<>();
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong waitedCount = new AtomicLong();
+
+    private Disposable completionSubscription;
+
+    public ScrapLease(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+        @Value("${trustpilot.scrap-lease.enabled}") boolean enabled,
+        @Value("${trustpilot.scrap-lease.ttl-ms}") long ttlMs) {
+
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.enabled = enabled;
+        this.leaseTtl = Duration.ofMillis(ttlMs);
+    }
+
+    @PostConstruct
+    void subscribeToCompletions() {
+        if (!enabled) {
+            return;
+        }
+        completionSubscription = Flux.defer(() -> reactiveStringRedisTemplate.listenToChannel(COMPLETION_CHANNEL))
+            .map(ReactiveSubscription.Message::getMessage)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(signal -> log.debug("Resubscribing to scrap completions", signal.failure())))
+            .subscribe(this::onCompletion);
+    }
+
+    @PreDestroy
+    void unsubscribeFromCompletions() {
+        if (completionSubscription != null) {
+            completionSubscription.dispose();
+        }
+    }
+
+    /**
+     * Subscribes to the call if the lease for the domain is acquired, or if Redis could not be asked for it.
+     * Otherwise waits until the instance holding the lease is done, or its lease has expired, and then subscribes
+     * to the other call, which is expected to read what the holder has written to Redis.
+     */
+    public <T> Mono<T> execute(String domain, Supplier<Mono<T>> call, Supplier<Mono<T>> afterOtherInstance) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+
+        String token = UUID.randomUUID().toString();
+        return acquire(domain, token)
+            .flatMap(lease -> {
+                if (lease == NO_LEASE) {
+                    return Mono.defer(call);
+                }
+                if (lease == HELD_BY_OTHER) {
+                    waitedCount.incrementAndGet();
+                    log.debug("Waiting for another instance to scrap domain: " + domain);
+                    return awaitCompletion(domain).then(Mono.defer(afterOtherInstance));
+                }
+                acquiredCount.incrementAndGet();
+                return Mono.defer(call)
+                    .doFinally(signal -> release(domain, token));
+            });
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    public long getWaitedCount() {
+        return waitedCount.get();
+    }
+
+    private Mono<Integer> acquire(String domain, String token) {
+        return reactiveStringRedisTemplate.opsForValue()
+            .setIfAbsent(leaseKey(domain), token, leaseTtl)
+            .map(acquired -> acquired ? ACQUIRED : HELD_BY_OTHER)
+            .defaultIfEmpty(NO_LEASE)
+            .onErrorResume(e -> {
+                log.debug("Could not acquire scrap lease, scraping without it", e);
+                return Mono.just(NO_LEASE);
+            });
+    }
+
+    private void release(String domain, String token) {
+        reactiveStringRedisTemplate
+            .execute(RELEASE_SCRIPT, List.of(leaseKey(domain)), List.of(token))
+            .then(reactiveStringRedisTemplate.convertAndSend(COMPLETION_CHANNEL, domain))
+            .subscribe(null, e -> log.debug("Could not release scrap lease for domain: " + domain, e));
+    }
+
+    /**
+     * Completes when the completion of the domain is announced, when the lease turns out to be gone already,
+     * e.g. released before the waiter was registered, or at the latest when the lease would have expired.
+     */
+    private Mono<Void> awaitCompletion(String domain) {
+        Sinks.Empty<Void> completion = waiters.computeIfAbsent(domain, key -> Sinks.empty());
+        Mono<Void> released = reactiveStringRedisTemplate.hasKey(leaseKey(domain))
+            .onErrorReturn(false)
+            .flatMap(held -> held ? Mono.<Void>never() : Mono.<Void>empty());
+
+        return Mono.firstWithSignal(completion.asMono(), released)
+            .timeout(leaseTtl, Mono.empty())
+            .doFinally(signal -> waiters.remove(domain, completion));
+    }
+
+    private void onCompletion(String domain) {
+        Sinks.Empty<Void> completion = waiters.remove(domain);
+        if (completion != null) {
+            completion.tryEmitEmpty();
+        }
+    }
+
+    private static String leaseKey(String domain) {
+        return "scrap-lease:" + domain;
+    }
+
+}
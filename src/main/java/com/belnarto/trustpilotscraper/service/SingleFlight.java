@@ -0,0 +1,55 @@
+package com.belnarto.trustpilotscraper.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Shares a single in-flight {@link Mono} among all concurrent callers asking for the same key.
+ * The entry is removed as soon as the shared call completes, fails or is cancelled by every waiter,
+ * so the next caller after that starts a fresh call.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong originatedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            Mono<V> candidate = Mono.defer(call)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .flux()
+                .share()
+                .singleOrEmpty();
+            self.set(candidate);
+
+            Mono<V> existing = inFlight.putIfAbsent(key, candidate);
+            if (existing != null) {
+                coalescedCount.incrementAndGet();
+                return existing;
+            }
+
+            originatedCount.incrementAndGet();
+            return candidate;
+        });
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getOriginatedCount() {
+        return originatedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.time.Duration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import redis.embedded.RedisServer;
+
+class LocalReviewCacheTest {
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    @BeforeAll
+    static void beforeAll() {
+        redisServer = RedisServer.builder()
+            .setting("maxmemory 128M") // https://github.com/kstyrc/embedded-redis/issues/51
+            .build();
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void entryExpiresNoLaterThanRemainingTtl() {
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        LocalReviewCache localReviewCache = new LocalReviewCache(template, 100, 60);
+
+        CachedReview review = new CachedReview(100, 4.3, System.currentTimeMillis());
+        localReviewCache.put("anyDomain", review, Duration.ofMillis(100));
+        assertNotNull(localReviewCache.get("anyDomain"));
+
+        await()
+            .atMost(Duration.ofSeconds(1))
+            .until(() -> localReviewCache.get("anyDomain") == null);
+    }
+
+    @Test
+    void entryIsInvalidatedByOtherInstance() {
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        LocalReviewCache writer = new LocalReviewCache(template, 100, 60);
+        LocalReviewCache reader = new LocalReviewCache(template, 100, 60);
+        writer.subscribeToInvalidations();
+        reader.subscribeToInvalidations();
+
+        CachedReview review = new CachedReview(100, 4.3, System.currentTimeMillis());
+        writer.put("anyDomain", review, Duration.ofMinutes(1));
+        reader.put("anyDomain", review, Duration.ofMinutes(1));
+
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> {
+                writer.publishInvalidation("anyDomain").block();
+                return reader.get("anyDomain") == null;
+            });
+        assertEquals(review, writer.get("anyDomain"));
+
+        writer.unsubscribeFromInvalidations();
+        reader.unsubscribeFromInvalidations();
+    }
+
+}
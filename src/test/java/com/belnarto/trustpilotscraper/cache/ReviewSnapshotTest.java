@@ -0,0 +1,70 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.belnarto.trustpilotscraper.serializer.CachedReviewRedisSerializer;
+import com.belnarto.trustpilotscraper.serializer.RedisValueFormat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+class ReviewSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reviewsReadAsWritten() throws IOException {
+        ReviewSnapshot snapshot = newSnapshot(directory.resolve("snapshot/reviews.bin"));
+        assertTrue(snapshot.read().isEmpty());
+
+        Map<String, CachedReview> reviews = new LinkedHashMap<>();
+        reviews.put("anyDomain1", new CachedReview(1274, 4.9, 1665000000000L,
+            "{\"reviewsCount\":1274,\"rating\":4.9}".getBytes(StandardCharsets.UTF_8)));
+        reviews.put("anyDomain2", new CachedReview(0, null, 1665000000001L));
+        snapshot.write(reviews);
+
+        assertEquals(reviews, snapshot.read());
+    }
+
+    @Test
+    void damagedTailSkipped() throws IOException {
+        Path path = directory.resolve("reviews.bin");
+        ReviewSnapshot snapshot = newSnapshot(path);
+
+        Map<String, CachedReview> reviews = new LinkedHashMap<>();
+        reviews.put("anyDomain1", new CachedReview(1274, 4.9, 1665000000000L));
+        reviews.put("anyDomain2", new CachedReview(100, 4.3, 1665000000001L));
+        snapshot.write(reviews);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals(Map.of("anyDomain1", reviews.get("anyDomain1")), snapshot.read());
+    }
+
+    private static ReviewSnapshot newSnapshot(Path path) {
+        RedisSerializationContext<String, CachedReview> context = RedisSerializationContext
+            .<String, CachedReview>newSerializationContext(new StringRedisSerializer())
+            .value(new CachedReviewRedisSerializer(RedisValueFormat.BINARY,
+                new Jackson2JsonRedisSerializer<>(CachedReview.class)))
+            .build();
+        ReactiveRedisTemplate<String, CachedReview> template =
+            new ReactiveRedisTemplate<>(mock(ReactiveRedisConnectionFactory.class), context);
+        return new ReviewSnapshot(template, path.toString());
+    }
+
+}
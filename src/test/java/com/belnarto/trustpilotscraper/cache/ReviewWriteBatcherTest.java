@@ -0,0 +1,180 @@
+package com.belnarto.trustpilotscraper.cache;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.belnarto.trustpilotscraper.serializer.CachedReviewRedisSerializer;
+import com.belnarto.trustpilotscraper.serializer.RedisValueFormat;
+import io.lettuce.core.ReadFrom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+import redis.embedded.RedisServer;
+
+class ReviewWriteBatcherTest {
+
+    private static RedisServer master;
+    private static RedisServer replica;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    @BeforeAll
+    static void beforeAll() {
+        master = RedisServer.builder()
+            .setting("maxmemory 128M") // https://github.com/kstyrc/embedded-redis/issues/51
+            .build();
+        master.start();
+        // writable, so a key can be put on the replica only to tell where the reads go
+        replica = RedisServer.builder()
+            .port(6380)
+            .slaveOf("localhost", 6379)
+            .setting("maxmemory 128M")
+            .setting("slave-read-only no")
+            .build();
+        replica.start();
+
+        LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+            .readFrom(ReadFrom.REPLICA_PREFERRED)
+            .build();
+        connectionFactory = new LettuceConnectionFactory(
+            new RedisStandaloneConfiguration("localhost", 6379), clientConfiguration);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        connectionFactory.destroy();
+        replica.stop();
+        master.stop();
+    }
+
+    @Test
+    void batchWrittenToMasterAndReadFromReplica() throws InterruptedException {
+        ReactiveRedisTemplate<String, CachedReview> template = newTemplate();
+        ReactiveStringRedisTemplate stringTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+        LocalReviewCache writer = new LocalReviewCache(stringTemplate, 100, 60);
+        LocalReviewCache reader = new LocalReviewCache(stringTemplate, 100, 60);
+        reader.subscribeToInvalidations();
+        ReviewWriteBatcher batcher = newBatcher(template, writer, 5);
+
+        CachedReview stale = new CachedReview(100, 4.3, System.currentTimeMillis());
+        CachedReview review1 = new CachedReview(101, 4.4, System.currentTimeMillis());
+        CachedReview review2 = new CachedReview(200, 3.9, System.currentTimeMillis());
+        reader.put("batchDomain1", stale, Duration.ofMinutes(1));
+        reader.put("batchDomain2", stale, Duration.ofMinutes(1));
+
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> {
+                batcher.write("batchDomain1", stale, Duration.ofMinutes(1));
+                batcher.write("batchDomain1", review1, Duration.ofMinutes(1));
+                batcher.write("batchDomain2", review2, Duration.ofMinutes(1));
+                return reader.get("batchDomain1") == null && reader.get("batchDomain2") == null;
+            });
+
+        // the replica catches up asynchronously, the reads of the template go to it
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> review1.equals(template.opsForValue().get("batchDomain1").block())
+                && review2.equals(template.opsForValue().get("batchDomain2").block()));
+        Duration ttl = template.getExpire("batchDomain1").block();
+        assertTrue(ttl != null && ttl.compareTo(Duration.ofSeconds(50)) > 0);
+
+        batcher.stop();
+        reader.unsubscribeFromInvalidations();
+    }
+
+    @Test
+    void readsGoToReplica() {
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        LettuceConnectionFactory replicaConnectionFactory =
+            new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", 6380));
+        replicaConnectionFactory.afterPropertiesSet();
+        try {
+            new ReactiveStringRedisTemplate(replicaConnectionFactory).opsForValue()
+                .set("replicaOnlyKey", "replica").block();
+
+            await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> "replica".equals(template.opsForValue().get("replicaOnlyKey").block()));
+        } finally {
+            replicaConnectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void writesOverMaxPendingDropped() throws InterruptedException {
+        ReactiveRedisTemplate<String, CachedReview> template = newTemplate();
+        LocalReviewCache localReviewCache =
+            new LocalReviewCache(new ReactiveStringRedisTemplate(connectionFactory), 100, 60);
+        ReviewWriteBatcher batcher = newBatcher(template, localReviewCache, 60_000);
+        ReflectionTestUtils.setField(batcher, "maxPending", 1);
+
+        CachedReview review = new CachedReview(100, 4.3, System.currentTimeMillis());
+        batcher.write("pendingDomain", review, Duration.ofMinutes(1));
+        StepVerifier.create(batcher.write("droppedDomain", review, Duration.ofMinutes(1)))
+            .verifyComplete();
+        assertEquals(1, batcher.getPendingCount());
+        assertEquals(1, batcher.getDroppedCount());
+
+        batcher.stop();
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> review.equals(template.opsForValue().get("pendingDomain").block()));
+        assertNull(template.opsForValue().get("droppedDomain").block());
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    void pendingWritesSentOnStop() throws InterruptedException {
+        ReactiveRedisTemplate<String, CachedReview> template = newTemplate();
+        LocalReviewCache localReviewCache =
+            new LocalReviewCache(new ReactiveStringRedisTemplate(connectionFactory), 100, 60);
+        ReviewWriteBatcher batcher = newBatcher(template, localReviewCache, 60_000);
+
+        CachedReview review = new CachedReview(100, 4.3, System.currentTimeMillis());
+        batcher.write("stoppedDomain", review, Duration.ofMinutes(1));
+        assertNull(template.opsForValue().get("stoppedDomain").block());
+
+        batcher.stop();
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> review.equals(template.opsForValue().get("stoppedDomain").block()));
+        assertEquals(review, template.opsForValue().get("stoppedDomain").block());
+    }
+
+    private static ReviewWriteBatcher newBatcher(ReactiveRedisTemplate<String, CachedReview> template,
+        LocalReviewCache localReviewCache, long maxDelayMs) {
+
+        ReviewWriteBatcher batcher = new ReviewWriteBatcher(template, localReviewCache, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batcher, "maxSize", 64);
+        ReflectionTestUtils.setField(batcher, "maxDelayMs", maxDelayMs);
+        ReflectionTestUtils.setField(batcher, "maxPending", 1024);
+        batcher.start();
+        return batcher;
+    }
+
+    private static ReactiveRedisTemplate<String, CachedReview> newTemplate() {
+        RedisSerializationContext<String, CachedReview> context = RedisSerializationContext
+            .<String, CachedReview>newSerializationContext(new StringRedisSerializer())
+            .value(new CachedReviewRedisSerializer(RedisValueFormat.BINARY,
+                new Jackson2JsonRedisSerializer<>(CachedReview.class)))
+            .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.belnarto.trustpilotscraper.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.ConnectTimeoutException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+class ScraperHttpClientConfigurationTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server.start();
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        Metrics.removeRegistry(meterRegistry);
+        server.shutdown();
+    }
+
+    @Test
+    void requestsOverPendingAcquireMaxCountAreRejected() {
+        WebClient webClient = newWebClient(1, 1, 2000, 1000);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("page").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        }
+
+        StepVerifier.create(Flux.range(0, 3)
+                .flatMap(i -> get(webClient, "/review/domain" + i)
+                    .map(body -> "ok")
+                    .onErrorResume(e -> Mono.just(e.getCause().getClass().getSimpleName()))))
+            .recordWith(ArrayList::new)
+            .expectNextCount(3)
+            .consumeRecordedWith(results -> {
+                assertEquals(2, results.stream().filter("ok"::equals).count());
+                assertTrue(results.contains(PoolAcquirePendingLimitException.class.getSimpleName()));
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void pendingAcquireTimesOut() {
+        WebClient webClient = newWebClient(1, 10, 100, 1000);
+        server.enqueue(new MockResponse().setBody("page").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        get(webClient, "/review/slowDomain").subscribe(null, e -> { });
+
+        StepVerifier.create(get(webClient, "/review/queuedDomain"))
+            .expectErrorSatisfies(e -> assertTrue(e.getCause() instanceof PoolAcquireTimeoutException))
+            .verify(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void connectTimesOut() throws IOException {
+        // once the accept queue of a server which never accepts is full, further connection attempts hang
+        List<Socket> queued = new ArrayList<>();
+        try (ServerSocket unresponsive = new ServerSocket(0, 1)) {
+            for (int i = 0; i < 2; i++) {
+                queued.add(new Socket("localhost", unresponsive.getLocalPort()));
+            }
+            WebClient webClient = newWebClient(1, 10, 2000, 200);
+
+            long start = System.nanoTime();
+            StepVerifier.create(webClient.get()
+                    .uri("http://localhost:" + unresponsive.getLocalPort() + "/review/anyDomain")
+                    .retrieve()
+                    .bodyToMono(String.class))
+                .expectErrorSatisfies(e -> assertTrue(e.getCause() instanceof ConnectTimeoutException))
+                .verify(Duration.ofSeconds(5));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        } finally {
+            for (Socket socket : queued) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void reviewUrisAreCollapsedInMetrics() {
+        WebClient webClient = newWebClient(4, 10, 2000, 1000);
+        server.enqueue(new MockResponse().setBody("page"));
+        server.enqueue(new MockResponse().setBody("page"));
+
+        StepVerifier.create(get(webClient, "/review/first.com").then(get(webClient, "/review/second.com")))
+            .expectNext("page")
+            .verifyComplete();
+
+        // the request level meters carry the method, the connection level ones are tagged with the protocol only
+        Set<String> uris = meterRegistry.getMeters().stream()
+            .map(Meter::getId)
+            .filter(id -> id.getName().startsWith("reactor.netty.http.client") && id.getTag("method") != null)
+            .map(id -> id.getTag("uri"))
+            .collect(Collectors.toSet());
+        assertFalse(uris.isEmpty());
+        assertEquals(Set.of("/review/{domain}"), uris);
+    }
+
+    @Test
+    void connectionIsReusedWithKeepAlive() throws InterruptedException {
+        WebClient webClient = newWebClient(1, 1, 2000, 1000);
+        server.enqueue(new MockResponse().setBody("page"));
+        server.enqueue(new MockResponse().setBody("page"));
+
+        StepVerifier.create(get(webClient, "/review/a.com").then(get(webClient, "/review/b.com")))
+            .expectNext("page")
+            .verifyComplete();
+
+        // the sequence number counts the requests served over the same connection
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    private Mono<String> get(WebClient webClient, String path) {
+        return webClient.get()
+            .uri(server.url(path).toString())
+            .retrieve()
+            .bodyToMono(String.class);
+    }
+
+    private WebClient newWebClient(int maxConnections, int pendingAcquireMaxCount, long pendingAcquireTimeoutMs,
+        int connectTimeoutMs) {
+
+        ScraperHttpClientConfiguration configuration = new ScraperHttpClientConfiguration();
+        ReflectionTestUtils.setField(configuration, "baseUrl", server.url("/").toString());
+        ReflectionTestUtils.setField(configuration, "maxConnections", maxConnections);
+        ReflectionTestUtils.setField(configuration, "pendingAcquireMaxCount", pendingAcquireMaxCount);
+        ReflectionTestUtils.setField(configuration, "pendingAcquireTimeoutMs", pendingAcquireTimeoutMs);
+        ReflectionTestUtils.setField(configuration, "maxIdleTimeSec", 30L);
+        ReflectionTestUtils.setField(configuration, "maxLifeTimeSec", 300L);
+        ReflectionTestUtils.setField(configuration, "evictInBackgroundSec", 30L);
+        ReflectionTestUtils.setField(configuration, "connectTimeoutMs", connectTimeoutMs);
+        ReflectionTestUtils.setField(configuration, "keepAlive", true);
+        ReflectionTestUtils.setField(configuration, "tcpKeepAlive", true);
+        ReflectionTestUtils.setField(configuration, "compress", true);
+        ReflectionTestUtils.setField(configuration, "http2", true);
+        ReflectionTestUtils.setField(configuration, "metricsEnabled", true);
+
+        connectionProvider = configuration.scraperConnectionProvider();
+        return configuration.scraperWebClient(WebClient.builder(), connectionProvider);
+    }
+
+}
@@ -1,22 +1,38 @@
 package com.belnarto.trustpilotscraper.controller;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
+import com.belnarto.trustpilotscraper.cache.CachedReview;
 import com.belnarto.trustpilotscraper.dto.ReviewDto;
 import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ScrapingOverloadedException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import com.belnarto.trustpilotscraper.serializer.ReviewResponseRenderer;
+import com.belnarto.trustpilotscraper.service.DomainReview;
 import com.belnarto.trustpilotscraper.service.ReviewService;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @ExtendWith(SpringExtension.class)
@@ -29,9 +45,15 @@ class ReviewControllerTest {
     @Value("${trustpilot.default-error-message}")
     private String defaultErrorMessage;
 
+    @Value("${trustpilot.cache-ttl-sec}")
+    private long cacheTtlSec;
+
     @MockBean
     ReviewService reviewService;
 
+    @Autowired
+    ReviewResponseRenderer reviewResponseRenderer;
+
     @Test
     void getReviewSuccessful() {
         int reviewsCount = 15;
@@ -41,8 +63,8 @@ class ReviewControllerTest {
         numberFormat.setMaximumFractionDigits(1);
         numberFormat.setRoundingMode(RoundingMode.FLOOR);
 
-        when(reviewService.getReviewByDomain(anyString()))
-            .thenReturn(Mono.just(new ReviewDto(reviewsCount, rating)));
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(new CachedReview(reviewsCount, rating, System.currentTimeMillis())));
 
         webClient.get().uri("/reviews/anyDomain")
             .accept(MediaType.APPLICATION_JSON)
@@ -54,12 +76,93 @@ class ReviewControllerTest {
             .jsonPath("$.rating").isEqualTo(numberFormat.format(rating));
     }
 
+    @Test
+    void getReviewPreRendered() {
+        byte[] response = "{\"reviewsCount\":15,\"rating\":4.5}".getBytes(StandardCharsets.UTF_8);
+
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(new CachedReview(0, 0.0, System.currentTimeMillis(), response)));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectHeader().contentLength(response.length)
+            .expectBody().json("{\"reviewsCount\":15,\"rating\":4.5}");
+    }
+
+    @Test
+    void getReviewRenderedAsBefore() {
+        ReviewDto review = new ReviewDto(1274, 4.87);
+        byte[] expected = "{\"reviewsCount\":1274,\"rating\":4.8}".getBytes(StandardCharsets.UTF_8);
+
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(new CachedReview(1274, 4.87, System.currentTimeMillis(),
+                reviewResponseRenderer.render(review))));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().consumeWith(result -> assertArrayEquals(expected, result.getResponseBody()));
+    }
+
+    @Test
+    void getReviewCacheable() {
+        long cachedAt = System.currentTimeMillis() - 600_000;
+        CachedReview cachedReview = new CachedReview(1274, 4.9, cachedAt);
+        String etag = reviewResponseRenderer.getEtag(reviewResponseRenderer.getResponse(cachedReview));
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(cachedReview));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+            .expectHeader().cacheControl(CacheControl.maxAge(cacheTtlSec, TimeUnit.SECONDS).cachePublic())
+            .expectHeader().value(HttpHeaders.AGE, age -> assertTrue(Long.parseLong(age) >= 600))
+            .expectBody().json("{\"reviewsCount\":1274,\"rating\":4.9}");
+    }
+
+    @Test
+    void getReviewWithoutCachedAt() {
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(new CachedReview(1274, 4.9, 0)));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().cacheControl(CacheControl.noCache().cachePublic())
+            .expectHeader().doesNotExist(HttpHeaders.AGE)
+            .expectBody().json("{\"reviewsCount\":1274,\"rating\":4.9}");
+    }
+
+    @Test
+    void getReviewNotModified() {
+        CachedReview cachedReview = new CachedReview(1274, 4.9, System.currentTimeMillis());
+        String etag = reviewResponseRenderer.getEtag(reviewResponseRenderer.getResponse(cachedReview));
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.just(cachedReview));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .ifNoneMatch(etag)
+            .exchange()
+            .expectStatus().isNotModified()
+            .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+            .expectHeader().exists(HttpHeaders.CACHE_CONTROL)
+            .expectBody().isEmpty();
+    }
+
     @Test
     void getReviewNotFound() {
         String domain = "anyDomain";
         String errorMessage = "Review for domain: " + domain + " was not found";
 
-        when(reviewService.getReviewByDomain(anyString()))
+        when(reviewService.getCachedReviewByDomain(anyString()))
             .thenReturn(Mono.error(new ReviewNotFoundException(errorMessage)));
 
         webClient.get().uri("/reviews/" + domain)
@@ -74,7 +177,7 @@ class ReviewControllerTest {
 
     @Test
     void getReviewServerError() {
-        when(reviewService.getReviewByDomain(anyString()))
+        when(reviewService.getCachedReviewByDomain(anyString()))
             .thenReturn(Mono.error(new Exception(defaultErrorMessage)));
 
         webClient.get().uri("/reviews/remoteError")
@@ -87,4 +190,71 @@ class ReviewControllerTest {
             .jsonPath("$.message").isEqualTo(defaultErrorMessage);
     }
 
-}
\ No newline at end of file
+    @Test
+    void getReviewUnavailable() {
+        String errorMessage = "Trustpilot is unavailable at the moment, please try again later";
+
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.error(new ScrapingUnavailableException(errorMessage)));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(503)
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectBody()
+            .jsonPath("$.status").isEqualTo(503)
+            .jsonPath("$.message").isEqualTo(errorMessage);
+    }
+
+    @Test
+    void getReviewShed() {
+        String errorMessage = "Too many reviews are being scraped, please retry later";
+
+        when(reviewService.getCachedReviewByDomain(anyString()))
+            .thenReturn(Mono.error(new ScrapingOverloadedException(errorMessage, Duration.ofSeconds(2))));
+
+        webClient.get().uri("/reviews/anyDomain")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isEqualTo(503)
+            .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2")
+            .expectBody()
+            .jsonPath("$.message").isEqualTo(errorMessage);
+    }
+
+    @Test
+    void getReviewsBatch() {
+        String notFoundMessage = "Review for domain: notFoundDomain was not found";
+
+        when(reviewService.getReviewsByDomains(any()))
+            .thenReturn(Flux.just(
+                DomainReview.found("foundDomain", new ReviewDto(15, 4.5)),
+                DomainReview.failed("notFoundDomain", new ReviewNotFoundException(notFoundMessage)),
+                DomainReview.failed("remoteError", new Exception("any"))));
+
+        webClient.post().uri("/reviews")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(List.of("foundDomain", "notFoundDomain", "remoteError"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class)
+            .isEqualTo("{\"domain\":\"foundDomain\",\"status\":200,"
+                + "\"review\":{\"reviewsCount\":15,\"rating\":4.5}}\n"
+                + "{\"domain\":\"notFoundDomain\",\"status\":404,\"message\":\"" + notFoundMessage + "\"}\n"
+                + "{\"domain\":\"remoteError\",\"status\":500,\"message\":\"" + defaultErrorMessage + "\"}\n");
+    }
+
+    @Test
+    void getReviewsBatchTooLarge() {
+        webClient.post().uri("/reviews")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(Collections.nCopies(1001, "anyDomain"))
+            .exchange()
+            .expectStatus().isBadRequest();
+    }
+
+}
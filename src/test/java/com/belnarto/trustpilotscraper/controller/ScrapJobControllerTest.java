@@ -0,0 +1,102 @@
+package com.belnarto.trustpilotscraper.controller;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.belnarto.trustpilotscraper.dto.ScrapJobDto;
+import com.belnarto.trustpilotscraper.service.ScrapJobService;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ScrapJobControllerTest {
+
+    @Autowired
+    WebTestClient webClient;
+
+    @MockBean
+    ScrapJobService scrapJobService;
+
+    @Test
+    void submitJob() {
+        when(scrapJobService.submit(anyCollection()))
+            .thenReturn(Mono.just(new ScrapJobDto("jobId", 2, 0, 0)));
+
+        webClient.post().uri("/jobs")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(List.of("firstDomain", "secondDomain"))
+            .exchange()
+            .expectStatus().isAccepted()
+            .expectHeader().location("/jobs/jobId")
+            .expectBody()
+            .jsonPath("$.id").isEqualTo("jobId")
+            .jsonPath("$.total").isEqualTo(2)
+            .jsonPath("$.done").isEqualTo(false);
+    }
+
+    @Test
+    void getJobProgress() {
+        when(scrapJobService.getJob("jobId"))
+            .thenReturn(Mono.just(new ScrapJobDto("jobId", 2, 1, 1)));
+
+        webClient.get().uri("/jobs/jobId")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.succeeded").isEqualTo(1)
+            .jsonPath("$.failed").isEqualTo(1)
+            .jsonPath("$.done").isEqualTo(true);
+    }
+
+    @Test
+    void getJobNotFound() {
+        when(scrapJobService.getJob(anyString())).thenReturn(Mono.empty());
+
+        webClient.get().uri("/jobs/missingJob")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getJobResults() {
+        when(scrapJobService.getJob("jobId"))
+            .thenReturn(Mono.just(new ScrapJobDto("jobId", 2, 1, 1)));
+        when(scrapJobService.getResults(eq("jobId"), eq(0L), anyLong()))
+            .thenReturn(Flux.just(
+                "{\"domain\":\"firstDomain\",\"review\":{\"reviewsCount\":15,\"rating\":4.5}}",
+                "{\"domain\":\"secondDomain\",\"error\":\"Review not found\"}"));
+
+        webClient.get().uri("/jobs/jobId/results")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class)
+            .isEqualTo("{\"domain\":\"firstDomain\",\"review\":{\"reviewsCount\":15,\"rating\":4.5}}\n"
+                + "{\"domain\":\"secondDomain\",\"error\":\"Review not found\"}\n");
+    }
+
+    @Test
+    void getJobResultsInvalidPage() {
+        webClient.get().uri("/jobs/jobId/results?limit=0")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus().isBadRequest();
+    }
+
+}
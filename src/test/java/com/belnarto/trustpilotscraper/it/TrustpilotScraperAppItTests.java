@@ -2,6 +2,7 @@ package com.belnarto.trustpilotscraper.it;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.math.RoundingMode;
@@ -15,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -25,6 +27,7 @@ import redis.embedded.RedisServer;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMetrics
 class TrustpilotScraperAppItTests {
 
     private static MockWebServer mockTrustpilotBackEnd;
@@ -96,7 +99,7 @@ class TrustpilotScraperAppItTests {
             .setBody(mockHtml)
             .addHeader("Content-Type", "text/html; charset=utf-8"));
 
-        String domain = "anyDomain";
+        String domain = "notFoundDomain";
         String errorMessage = "Review for domain: " + domain + " was not found";
 
         webClient.get().uri("/reviews/" + domain)
@@ -129,4 +132,26 @@ class TrustpilotScraperAppItTests {
             .jsonPath("$.message").isEqualTo(defaultErrorMessage);
     }
 
+    @Test
+    void metricsExported() {
+        webClient.get().uri("/actuator/prometheus")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class)
+            .value(metrics -> {
+                assertTrue(metrics.contains("trustpilot_cache_requests_total{result=\"hit\",tier=\"local\""));
+                assertTrue(metrics.contains("trustpilot_rate_limit_queue_size"));
+                assertTrue(metrics.contains("trustpilot_circuit_breaker_state{state=\"closed\""));
+            });
+    }
+
+    @Test
+    void readyOnceWarmedUp() {
+        webClient.get().uri("/actuator/health/readiness")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.status").isEqualTo("UP");
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.belnarto.trustpilotscraper.load;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Stands in for Trustpilot under load: answers every review page with the captured page padded to the
+ * configured size and rewritten for the domain requested, after a log-normally distributed delay, and fails a
+ * configured share of requests.
+ * Whether a domain is not found depends on the domain only, as it would on the real site.
+ */
+class FakeReviewSite {
+
+    private static final String CAPTURED_DOMAIN = "gullwingmotor.com";
+
+    private static final String PADDING = "<div class=\"review-card\"><p>Great service, would buy again.</p></div>\n";
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final double latencyMedianMs;
+    private final double latencySigma;
+    private final double errorRate;
+    private final double notFoundRate;
+
+    private final String page;
+    private final String notFoundPage;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    FakeReviewSite(double latencyMedianMs, double latencySigma, double errorRate, double notFoundRate, int pageKb)
+        throws IOException {
+
+        this.latencyMedianMs = latencyMedianMs;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+        this.notFoundRate = notFoundRate;
+
+        String captured = readPage("successfulWithValues");
+        int bodyEnd = captured.lastIndexOf("</body>");
+        int paddingLength = Math.max(0, pageKb * 1024 - captured.length());
+        this.page = captured.substring(0, bodyEnd) + PADDING.repeat(paddingLength / PADDING.length())
+            + captured.substring(bodyEnd);
+        this.notFoundPage = readPage("successfulDomainNotFound");
+
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    void start() throws IOException {
+        server.start();
+    }
+
+    void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    String getBaseUrl() {
+        return "http://localhost:" + server.getPort();
+    }
+
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        requestCount.incrementAndGet();
+        String domain = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latencyMs = (long) (latencyMedianMs * Math.exp(latencySigma * random.nextGaussian()));
+
+        MockResponse response;
+        if (Math.floorMod(domain.hashCode(), 10_000) < notFoundRate * 10_000) {
+            response = new MockResponse().setResponseCode(404).setBody(notFoundPage);
+        } else if (random.nextDouble() < errorRate) {
+            response = new MockResponse().setResponseCode(500);
+        } else {
+            response = new MockResponse().setBody(page.replace(CAPTURED_DOMAIN, domain));
+        }
+        return response
+            .addHeader("Content-Type", "text/html; charset=utf-8")
+            .setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private String readPage(String name) throws IOException {
+        try (InputStream page = requireNonNull(getClass().getResourceAsStream("/mockwebserver/" + name + ".html"))) {
+            return new String(page.readAllBytes(), UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.belnarto.trustpilotscraper.load;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import redis.embedded.RedisServer;
+
+/**
+ * Drives the whole application (WebFlux, Redis, scraper) with an open-model load of review requests,
+ * against a simulated Trustpilot. Not part of the regular build, run it with
+ * ./gradlew loadTest -Dload.rps=2000 -Dload.duration-sec=60 (see the constants below for all the knobs).
+ */
+@Tag("load")
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReviewLoadTest {
+
+    private static final int RPS = Integer.getInteger("load.rps", 2000);
+    private static final int DURATION_SEC = Integer.getInteger("load.duration-sec", 30);
+    private static final int WARM_UP_SEC = Integer.getInteger("load.warm-up-sec", 10);
+    private static final int MAX_CONCURRENCY = Integer.getInteger("load.max-concurrency", 1024);
+    private static final int DOMAINS = Integer.getInteger("load.domains", 10_000);
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("load.zipf-exponent", "1.1"));
+
+    private static final double UPSTREAM_LATENCY_MEDIAN_MS =
+        Double.parseDouble(System.getProperty("load.upstream.latency-median-ms", "150"));
+    private static final double UPSTREAM_LATENCY_SIGMA =
+        Double.parseDouble(System.getProperty("load.upstream.latency-sigma", "0.5"));
+    private static final double UPSTREAM_ERROR_RATE =
+        Double.parseDouble(System.getProperty("load.upstream.error-rate", "0.01"));
+    private static final double UPSTREAM_NOT_FOUND_RATE =
+        Double.parseDouble(System.getProperty("load.upstream.not-found-rate", "0.05"));
+    private static final int UPSTREAM_PAGE_KB = Integer.getInteger("load.upstream.page-kb", 350);
+    private static final int UPSTREAM_PERMITS_PER_SEC = Integer.getInteger("load.upstream.permits-per-sec", 1000);
+
+    private static final int TICKS_PER_SEC = 100;
+
+    private static FakeReviewSite fakeReviewSite;
+
+    private static RedisServer redisServer;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry r) {
+        r.add("trustpilot.base-url", () -> fakeReviewSite.getBaseUrl());
+        r.add("trustpilot.rate-limit.permits-per-sec", () -> UPSTREAM_PERMITS_PER_SEC);
+        r.add("trustpilot.rate-limit.burst", () -> UPSTREAM_PERMITS_PER_SEC);
+        r.add("trustpilot.rate-limit.max-in-flight", () -> MAX_CONCURRENCY);
+        r.add("trustpilot.http-client.max-connections", () -> MAX_CONCURRENCY);
+    }
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        fakeReviewSite = new FakeReviewSite(UPSTREAM_LATENCY_MEDIAN_MS, UPSTREAM_LATENCY_SIGMA, UPSTREAM_ERROR_RATE,
+            UPSTREAM_NOT_FOUND_RATE, UPSTREAM_PAGE_KB);
+        fakeReviewSite.start();
+
+        redisServer = RedisServer.builder()
+            .setting("maxmemory 512M") // https://github.com/kstyrc/embedded-redis/issues/51
+            .build();
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        fakeReviewSite.shutdown();
+
+        redisServer.stop();
+    }
+
+    @Test
+    void getReviewUnderLoad() {
+        double[] domainWeights = getCumulativeZipfWeights();
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("load")
+            .maxConnections(MAX_CONCURRENCY)
+            .pendingAcquireMaxCount(-1)
+            .build();
+        WebClient webClient = WebClient.builder()
+            .baseUrl("http://localhost:" + port)
+            .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+            .build();
+
+        // the warm-up uses its own domains, so that it lets the JIT kick in without filling the caches
+        runLoad(webClient, "warm-up-", WARM_UP_SEC, domainWeights, newLatencyTimer(), new ConcurrentHashMap<>(),
+            new AtomicLong());
+        long upstreamCallsInitial = fakeReviewSite.getRequestCount();
+        double[] cacheRequestsInitial = getCacheRequests();
+
+        Timer latency = newLatencyTimer();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        AtomicLong dropped = new AtomicLong();
+        long start = System.nanoTime();
+        runLoad(webClient, "", DURATION_SEC, domainWeights, latency, statuses, dropped);
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        double[] cacheRequests = getCacheRequests();
+        for (int i = 0; i < cacheRequests.length; i++) {
+            cacheRequests[i] -= cacheRequestsInitial[i];
+        }
+        report(latency, statuses, dropped.get(), elapsedSec, fakeReviewSite.getRequestCount() - upstreamCallsInitial,
+            cacheRequests);
+        connectionProvider.dispose();
+
+        assertTrue(latency.count() > 0);
+    }
+
+    /**
+     * Sends requests at the target rate regardless of how fast they are answered, up to the maximum concurrency.
+     * Requests which could not be sent because of it are counted as dropped.
+     */
+    private static void runLoad(WebClient webClient, String domainPrefix, int durationSec, double[] domainWeights,
+        Timer latency, Map<Integer, LongAdder> statuses, AtomicLong dropped) {
+
+        if (durationSec <= 0) {
+            return;
+        }
+
+        int requestsPerTick = (RPS + TICKS_PER_SEC - 1) / TICKS_PER_SEC;
+        long tickNanos = TimeUnit.SECONDS.toNanos(1) * requestsPerTick / RPS;
+
+        Flux.interval(Duration.ofNanos(tickNanos))
+            .take(TimeUnit.SECONDS.toNanos(durationSec) / tickNanos)
+            .onBackpressureDrop(tick -> dropped.addAndGet(requestsPerTick))
+            .flatMapIterable(tick -> Collections.nCopies(requestsPerTick, tick))
+            .flatMap(request -> {
+                String domain = domainPrefix + "domain-" + pickDomain(domainWeights) + ".com";
+                long requestStart = System.nanoTime();
+                return webClient.get().uri("/reviews/{domain}", domain)
+                    .exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()))
+                    .onErrorReturn(-1)
+                    .doOnNext(status -> {
+                        latency.record(System.nanoTime() - requestStart, TimeUnit.NANOSECONDS);
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    });
+            }, MAX_CONCURRENCY)
+            .then()
+            .block(Duration.ofSeconds(durationSec + 60L));
+    }
+
+    private static Timer newLatencyTimer() {
+        return Timer.builder("load.latency")
+            .publishPercentiles(0.5, 0.99, 0.999)
+            .distributionStatisticExpiry(Duration.ofHours(1))
+            .distributionStatisticBufferLength(1)
+            .register(new SimpleMeterRegistry());
+    }
+
+    private void report(Timer latency, Map<Integer, LongAdder> statuses, long dropped, double elapsedSec,
+        long upstreamCalls, double[] cacheRequests) {
+
+        double localHits = cacheRequests[0];
+        double localMisses = cacheRequests[1];
+        double redisHits = cacheRequests[2];
+
+        StringBuilder report = new StringBuilder("\n=== Load test report ===\n")
+            .append(String.format("target rate:        %d rps for %d s, %d domains, zipf %.2f%n",
+                RPS, DURATION_SEC, DOMAINS, ZIPF_EXPONENT))
+            .append(String.format("throughput:         %.1f rps (%d requests, %d dropped by the generator)%n",
+                latency.count() / elapsedSec, latency.count(), dropped));
+        for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+            report.append(String.format("latency p%-6s     %.2f ms%n",
+                percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        report
+            .append(String.format("max latency:        %.2f ms%n", latency.max(TimeUnit.MILLISECONDS)))
+            .append("statuses:           ").append(new TreeMap<>(statuses)).append('\n')
+            .append(String.format("upstream calls:     %d%n", upstreamCalls))
+            .append(String.format("local hit ratio:    %.3f%n", localHits / Math.max(1, localHits + localMisses)))
+            .append(String.format("overall hit ratio:  %.3f%n",
+                (localHits + redisHits) / Math.max(1, localHits + localMisses)));
+        System.out.println(report);
+    }
+
+    private double[] getCacheRequests() {
+        return new double[] {
+            getCacheRequests("local", "hit"), getCacheRequests("local", "miss"), getCacheRequests("redis", "hit")
+        };
+    }
+
+    private double getCacheRequests(String tier, String result) {
+        FunctionCounter counter = meterRegistry.find("trustpilot.cache.requests")
+            .tags("tier", tier, "result", result)
+            .functionCounter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static double[] getCumulativeZipfWeights() {
+        double[] weights = new double[DOMAINS];
+        double sum = 0;
+        for (int i = 0; i < DOMAINS; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            weights[i] = sum;
+        }
+        for (int i = 0; i < DOMAINS; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    private static int pickDomain(double[] cumulativeWeights) {
+        int index = Arrays.binarySearch(cumulativeWeights, ThreadLocalRandom.current().nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+
+}
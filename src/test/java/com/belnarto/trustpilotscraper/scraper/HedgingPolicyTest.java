@@ -0,0 +1,81 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class HedgingPolicyTest {
+
+    @Test
+    void slowAttemptIsHedged() {
+        HedgingPolicy hedgingPolicy = new HedgingPolicy(true, 0.95, 50, 50, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Mono<String> review = hedgingPolicy.hedge(() -> attempts.incrementAndGet() == 1
+            ? Mono.just("first").delayElement(Duration.ofSeconds(5))
+            : Mono.just("second"));
+
+        StepVerifier.create(review)
+            .expectNext("second")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+        assertEquals(1, hedgingPolicy.getHedgeCount());
+        assertEquals(1, hedgingPolicy.getHedgeWinCount());
+    }
+
+    @Test
+    void fastAttemptIsNotHedged() {
+        HedgingPolicy hedgingPolicy = new HedgingPolicy(true, 0.95, 50, 50, 100);
+
+        StepVerifier.create(hedgingPolicy.hedge(() -> Mono.just("first")))
+            .expectNext("first")
+            .verifyComplete();
+        assertEquals(1, hedgingPolicy.getAttemptCount());
+        assertEquals(0, hedgingPolicy.getHedgeCount());
+    }
+
+    @Test
+    void errorIsNotHedged() {
+        HedgingPolicy hedgingPolicy = new HedgingPolicy(true, 0.95, 50, 50, 100);
+
+        StepVerifier.create(hedgingPolicy.hedge(() -> Mono.error(new IllegalStateException())))
+            .expectError(IllegalStateException.class)
+            .verify();
+        assertEquals(0, hedgingPolicy.getHedgeCount());
+    }
+
+    @Test
+    void errorOfHedgeDoesNotCancelFirstAttempt() {
+        HedgingPolicy hedgingPolicy = new HedgingPolicy(true, 0.95, 50, 50, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Mono<String> review = hedgingPolicy.hedge(() -> attempts.incrementAndGet() == 1
+            ? Mono.just("first").delayElement(Duration.ofMillis(300))
+            : Mono.error(new IllegalStateException()));
+
+        StepVerifier.create(review)
+            .expectNext("first")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+        assertEquals(1, hedgingPolicy.getHedgeCount());
+        assertEquals(0, hedgingPolicy.getHedgeWinCount());
+    }
+
+    @Test
+    void delayFollowsObservedLatencies() {
+        HedgingPolicy hedgingPolicy = new HedgingPolicy(true, 0.5, 10, 1000, 100);
+
+        for (int i = 0; i < 10; i++) {
+            hedgingPolicy.hedge(() -> Mono.just("review").delayElement(Duration.ofMillis(100))).block();
+        }
+
+        long delayMillis = hedgingPolicy.getDelay().toMillis();
+        assertTrue(delayMillis >= 100 && delayMillis < 1000, "Delay: " + delayMillis);
+    }
+
+}
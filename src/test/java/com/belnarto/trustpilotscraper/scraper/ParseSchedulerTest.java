@@ -0,0 +1,49 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+class ParseSchedulerTest {
+
+    @Test
+    void taskRunsOnParseThread() {
+        ParseScheduler scheduler = new ParseScheduler(new SimpleMeterRegistry(), 1, 1);
+
+        StepVerifier.create(scheduler.submit(() -> Thread.currentThread().getName()))
+            .expectNextMatches(name -> name.startsWith("parse-"))
+            .verifyComplete();
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    void taskIsRejectedWhenQueueIsFull() throws InterruptedException {
+        ParseScheduler scheduler = new ParseScheduler(new SimpleMeterRegistry(), 1, 1);
+        CountDownLatch parsing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        scheduler.submit(() -> {
+            parsing.countDown();
+            release.await();
+            return 1;
+        }).subscribe();
+        assertTrue(parsing.await(1, TimeUnit.SECONDS));
+        scheduler.submit(() -> 2).subscribe();
+        assertEquals(1, scheduler.getQueueSize());
+
+        StepVerifier.create(scheduler.submit(() -> 3))
+            .verifyError(ScrapingUnavailableException.class);
+        assertEquals(1, scheduler.getRejectedCount());
+
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class PermitQueueTest {
+
+    @Test
+    void callsAreRunInOrderWhenPolled() {
+        AtomicInteger drains = new AtomicInteger();
+        PermitQueue queue = new PermitQueue(10, Duration.ofSeconds(2), drains::incrementAndGet);
+        StringBuilder order = new StringBuilder();
+
+        queue.enqueue(() -> Mono.fromRunnable(() -> order.append('a')), IllegalStateException::new,
+            IllegalStateException::new).subscribe();
+        queue.enqueue(() -> Mono.fromRunnable(() -> order.append('b')), IllegalStateException::new,
+            IllegalStateException::new).subscribe();
+        assertEquals(2, drains.get());
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getQueuedCount());
+
+        queue.poll().run();
+        queue.poll().run();
+
+        assertEquals("ab", order.toString());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void callIsRejectedWhenQueueIsFull() {
+        PermitQueue queue = new PermitQueue(1, Duration.ofSeconds(2), () -> { });
+
+        Disposable waiting = queue.enqueue(Mono::empty, IllegalStateException::new, IllegalArgumentException::new)
+            .subscribe();
+
+        StepVerifier.create(queue.enqueue(Mono::empty, IllegalStateException::new, IllegalArgumentException::new))
+            .verifyError(IllegalStateException.class);
+        waiting.dispose();
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void callExpiresWhenNotPolledInTime() {
+        PermitQueue queue = new PermitQueue(1, Duration.ofMillis(100), () -> { });
+
+        StepVerifier.create(queue.enqueue(Mono::empty, IllegalStateException::new, IllegalArgumentException::new))
+            .expectError(IllegalArgumentException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(0, queue.size());
+    }
+
+}
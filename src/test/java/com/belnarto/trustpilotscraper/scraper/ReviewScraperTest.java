@@ -2,13 +2,24 @@ package com.belnarto.trustpilotscraper.scraper;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.util.StringUtils.hasText;
 
 import com.belnarto.trustpilotscraper.dto.ReviewDto;
 import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.QueueDispatcher;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -19,6 +30,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -32,6 +44,12 @@ class ReviewScraperTest {
     @Autowired
     ReviewScraper reviewScraper;
 
+    @Autowired
+    CircuitBreaker scraperCircuitBreaker;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @DynamicPropertySource
     static void properties(DynamicPropertyRegistry r) {
         r.add("trustpilot.base-url", () -> "http://localhost:" + mockTrustpilotBackEnd.getPort());
@@ -57,11 +75,32 @@ class ReviewScraperTest {
             .setBody(mockHtml)
             .addHeader("Content-Type", "text/html; charset=utf-8"));
 
-        Mono<ReviewDto> reviewDtoMono = reviewScraper.scrapForReviewByDomain("successfulWithValues");
+        Mono<ReviewDto> reviewDtoMono = reviewScraper.scrapForReviewByDomain("gullwingmotor.com");
+
+        StepVerifier.create(reviewDtoMono)
+            .expectNextMatches(r -> r.getReviewsCount() == 1274 && r.getRating() == 4.9)
+            .verifyComplete();
+    }
+
+    @Test
+    void getReviewSuccessfulWithValuesDomMode() throws IOException {
+        String path = "/mockwebserver/successfulWithValues.html";
+        String mockHtml = IOUtils.toString(requireNonNull(this.getClass().getResourceAsStream(path)), UTF_8);
+
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setBody(mockHtml)
+            .addHeader("Content-Type", "text/html; charset=utf-8"));
+
+        Object extractionModeInitial = ReflectionTestUtils.getField(reviewScraper, "extractionMode");
+        ReflectionTestUtils.setField(reviewScraper, "extractionMode", ExtractionMode.DOM);
+
+        Mono<ReviewDto> reviewDtoMono = reviewScraper.scrapForReviewByDomain("gullwingmotor.com");
 
         StepVerifier.create(reviewDtoMono)
             .expectNextMatches(r -> r.getReviewsCount() == 1274 && r.getRating() == 4.9)
             .verifyComplete();
+
+        ReflectionTestUtils.setField(reviewScraper, "extractionMode", extractionModeInitial);
     }
 
     @Test
@@ -80,6 +119,46 @@ class ReviewScraperTest {
             .verifyComplete();
     }
 
+    @Test
+    void getReviewFromStructuredDataBeforePositional() throws IOException {
+        String path = "/mockwebserver/successfulWithValues.html";
+        String mockHtml = IOUtils.toString(requireNonNull(this.getClass().getResourceAsStream(path)), UTF_8);
+
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setBody(mockHtml)
+            .addHeader("Content-Type", "text/html; charset=utf-8"));
+
+        long structuredDataHitsInitial = extractions("structured_data", "hit");
+        long positionalSkipsInitial = extractions("positional", "skipped");
+
+        StepVerifier.create(reviewScraper.scrapForReviewByDomain("gullwingmotor.com"))
+            .expectNext(new ReviewDto(1274, 4.9))
+            .verifyComplete();
+
+        assertEquals(structuredDataHitsInitial + 1, extractions("structured_data", "hit"));
+        assertEquals(positionalSkipsInitial + 1, extractions("positional", "skipped"));
+    }
+
+    @Test
+    void getReviewFallsBackToPositional() throws IOException {
+        String path = "/mockwebserver/successfulWithoutValues.html";
+        String mockHtml = IOUtils.toString(requireNonNull(this.getClass().getResourceAsStream(path)), UTF_8);
+
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setBody(mockHtml)
+            .addHeader("Content-Type", "text/html; charset=utf-8"));
+
+        long structuredDataMissesInitial = extractions("structured_data", "miss");
+        long positionalHitsInitial = extractions("positional", "hit");
+
+        StepVerifier.create(reviewScraper.scrapForReviewByDomain("positional"))
+            .expectNext(new ReviewDto(0, 0.0))
+            .verifyComplete();
+
+        assertEquals(structuredDataMissesInitial + 1, extractions("structured_data", "miss"));
+        assertEquals(positionalHitsInitial + 1, extractions("positional", "hit"));
+    }
+
     @Test
     void getReviewSuccessfulDomainNotFound() throws IOException {
         String path = "/mockwebserver/successfulDomainNotFound.html";
@@ -114,4 +193,106 @@ class ReviewScraperTest {
             .verify();
     }
 
-}
\ No newline at end of file
+    @Test
+    void getReviewRetriedAfterServerError() throws IOException {
+        String path = "/mockwebserver/successfulWithValues.html";
+        String mockHtml = IOUtils.toString(requireNonNull(this.getClass().getResourceAsStream(path)), UTF_8);
+
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setStatus("HTTP/1.1 502 BAD_GATEWAY"));
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setBody(mockHtml)
+            .addHeader("Content-Type", "text/html; charset=utf-8"));
+
+        long retryCountInitial = reviewScraper.getRetryCount();
+        Mono<ReviewDto> reviewDtoMono = reviewScraper.scrapForReviewByDomain("gullwingmotor.com");
+
+        StepVerifier.create(reviewDtoMono)
+            .expectNextMatches(r -> r.getReviewsCount() == 1274 && r.getRating() == 4.9)
+            .verifyComplete();
+        assertEquals(retryCountInitial + 1, reviewScraper.getRetryCount());
+    }
+
+    @Test
+    void getReviewFailsWithinDeadlineWhenRetriesAreSlow() {
+        Object deadlineInitial = ReflectionTestUtils.getField(reviewScraper, "deadlineMs");
+        ReflectionTestUtils.setField(reviewScraper, "deadlineMs", 1000L);
+        QueueDispatcher dispatcher = new QueueDispatcher();
+        dispatcher.setFailFast(new MockResponse()
+            .setStatus("HTTP/1.1 502 BAD_GATEWAY")
+            .setHeadersDelay(800, TimeUnit.MILLISECONDS));
+        mockTrustpilotBackEnd.setDispatcher(dispatcher);
+
+        try {
+            long start = System.nanoTime();
+            StepVerifier.create(reviewScraper.scrapForReviewByDomain("slowServerError"))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(3));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(1500)) < 0);
+        } finally {
+            mockTrustpilotBackEnd.setDispatcher(new QueueDispatcher());
+            ReflectionTestUtils.setField(reviewScraper, "deadlineMs", deadlineInitial);
+        }
+    }
+
+    @Test
+    void getReviewFailsFastWhenCircuitIsOpen() {
+        int requestCountInitial = mockTrustpilotBackEnd.getRequestCount();
+        scraperCircuitBreaker.transitionToForcedOpenState();
+
+        Mono<ReviewDto> reviewDtoMono = reviewScraper.scrapForReviewByDomain("anyDomain");
+
+        StepVerifier.create(reviewDtoMono)
+            .expectError(ScrapingUnavailableException.class)
+            .verify();
+        assertEquals(requestCountInitial, mockTrustpilotBackEnd.getRequestCount());
+
+        scraperCircuitBreaker.reset();
+    }
+
+    @Test
+    void getReviewNotModifiedWithValidators() throws IOException, InterruptedException {
+        String path = "/mockwebserver/successfulWithValues.html";
+        String mockHtml = IOUtils.toString(requireNonNull(this.getClass().getResourceAsStream(path)), UTF_8);
+        String etag = "\"33a64df5\"";
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setBody(mockHtml)
+            .addHeader("Content-Type", "text/html; charset=utf-8")
+            .addHeader("ETag", etag)
+            .addHeader("Last-Modified", lastModified));
+        mockTrustpilotBackEnd.enqueue(new MockResponse()
+            .setStatus("HTTP/1.1 304 NOT_MODIFIED")
+            .addHeader("ETag", etag));
+
+        ScrapedReview scrapedReview = reviewScraper
+            .scrapForReviewByDomain("notModified", UpstreamValidators.NONE)
+            .block();
+        UpstreamValidators validators = new UpstreamValidators(etag, lastModified);
+        assertEquals(ScrapedReview.of(new ReviewDto(1274, 4.9), validators), scrapedReview);
+
+        long notModifiedCountInitial = reviewScraper.getNotModifiedCount();
+        long savedBytesInitial = reviewScraper.getSavedBytes();
+        StepVerifier.create(reviewScraper.scrapForReviewByDomain("notModified", validators))
+            .expectNext(ScrapedReview.notModified(validators))
+            .verifyComplete();
+
+        RecordedRequest request;
+        do {
+            request = mockTrustpilotBackEnd.takeRequest();
+        } while (request.getHeader("If-None-Match") == null);
+        assertEquals(etag, request.getHeader("If-None-Match"));
+        assertEquals(lastModified, request.getHeader("If-Modified-Since"));
+        assertEquals(notModifiedCountInitial + 1, reviewScraper.getNotModifiedCount());
+        assertTrue(reviewScraper.getSavedBytes() > savedBytesInitial);
+    }
+
+    private long extractions(String extractor, String result) {
+        Timer timer = meterRegistry.find("trustpilot.extraction")
+            .tags("extractor", extractor, "result", result)
+            .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class StreamingReviewExtractorTest {
+
+    private static final String BUSINESS_UNIT_ID = "business-unit-title";
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 4096, 1 << 20})
+    void extractWithValues(int chunkSize) throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulWithValues.html");
+
+        StreamingReviewExtractor extractor = feedInChunks(html, chunkSize);
+
+        assertTrue(extractor.isTargetFound());
+        assertEquals(3, extractor.getChildCount());
+        assertEquals("1,274 • Excellent", extractor.getReviewsText());
+        assertEquals("4.9", extractor.getRatingText());
+        assertTrue(extractor.getBytesRead() < html.length / 2);
+    }
+
+    @Test
+    void extractWithoutValues() throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulWithoutValues.html");
+
+        StreamingReviewExtractor extractor = feedInChunks(html, 4096);
+
+        assertTrue(extractor.isTargetFound());
+        assertEquals("0", extractor.getReviewsText());
+        assertEquals("0.0", extractor.getRatingText());
+    }
+
+    @Test
+    void extractWithoutBusinessUnit() throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulDomainNotFound.html");
+
+        StreamingReviewExtractor extractor = feedInChunks(html, 4096);
+
+        assertFalse(extractor.isTargetFound());
+        assertEquals(html.length, extractor.getBytesRead());
+    }
+
+    @Test
+    void extractIgnoresScriptsCommentsAndEntities() {
+        String html = "<html><script>var s = '<div id=\"business-unit-title\">';</script>"
+            + "<!-- <div id=\"business-unit-title\"> -->"
+            + "<div id='business-unit-title'><h1>Name</h1><span><b>1,2</b>34&nbsp;&amp; more</span>"
+            + "<div><img src=\"a.svg\"><p>4.5</p><br/></div><span>tail</span></div>";
+
+        StreamingReviewExtractor extractor = feedInChunks(html.getBytes(StandardCharsets.UTF_8), 3);
+
+        assertTrue(extractor.isTargetFound());
+        assertEquals(3, extractor.getChildCount());
+        assertEquals("1,234 & more", extractor.getReviewsText());
+        assertEquals("4.5", extractor.getRatingText());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "<div id='business-unit-title'><p>Name<p>1,234 reviews<p>4.5</div>",
+        "<div id='business-unit-title'><h1>Name</h1><ul><li>1,234<li>more</ul><p>4.5<div>tail</div></div>",
+        "<div id='business-unit-title'><span>Name</span><p>1,234<div>4.5</div>rest</div>",
+        "<div id='business-unit-title'><span>Name</span></p><b>4.5</b></div>",
+        "<dl id='business-unit-title'><dt>Name<dd>1,234<dt>4.5</dl>",
+        "<div id='business-unit-title'><h1>Name<h2>1,234</h2><span>4.5</span></div>",
+        "<p id='business-unit-title'><span>Name</span><span>1,234</span><div>4.5</div>",
+        "<div id='business-unit-title'><p>Name<table><tr><td><p>1<p>2</td></tr></table><p>4.5</span></div>"
+    })
+    void extractLikeJsoupWithImplicitlyClosedElements(String html) {
+        Element target = Jsoup.parse(html).getElementById(BUSINESS_UNIT_ID);
+
+        StreamingReviewExtractor extractor = feedInChunks(html.getBytes(StandardCharsets.UTF_8), 5);
+
+        assertTrue(extractor.isTargetFound());
+        assertEquals(Math.min(target.childrenSize(), 3), extractor.getChildCount());
+        if (target.childrenSize() >= 3) {
+            assertEquals(target.child(1).text(), extractor.getReviewsText());
+            assertEquals(target.child(2).text(), extractor.getRatingText());
+        }
+    }
+
+    private StreamingReviewExtractor feedInChunks(byte[] html, int chunkSize) {
+        StreamingReviewExtractor extractor = new StreamingReviewExtractor(BUSINESS_UNIT_ID);
+        for (int offset = 0; offset < html.length; offset += chunkSize) {
+            ByteBuffer chunk = ByteBuffer.wrap(html, offset, Math.min(chunkSize, html.length - offset));
+            if (extractor.feed(chunk)) {
+                break;
+            }
+        }
+        return extractor;
+    }
+
+    private byte[] readPage(String path) throws IOException {
+        return IOUtils.toByteArray(requireNonNull(this.getClass().getResourceAsStream(path)));
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class StructuredDataReviewExtractorTest {
+
+    private static final String DOMAIN = "gullwingmotor.com";
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 4096, 1 << 20})
+    void extractWithValues(int chunkSize) throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulWithValues.html");
+
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor(DOMAIN);
+        int bytesFed = feedInChunks(extractor, html, chunkSize);
+
+        assertEquals(Optional.of(new ReviewDto(1274, 4.9)), extractor.extract());
+        assertTrue(chunkSize >= html.length || bytesFed < html.length / 4);
+    }
+
+    @Test
+    void extractWithoutStructuredData() throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulWithoutValues.html");
+
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor(DOMAIN);
+        int bytesFed = feedInChunks(extractor, html, 4096);
+
+        assertFalse(extractor.extract().isPresent());
+        assertEquals(html.length, bytesFed);
+    }
+
+    @Test
+    void extractSkipsBusinessesOfOtherDomains() throws IOException {
+        String page = new String(readPage("/mockwebserver/successfulWithValues.html"), StandardCharsets.UTF_8);
+        String decoy = "<script type=\"application/ld+json\">{\"@graph\":[{\"@type\":\"LocalBusiness\","
+            + "\"url\":\"https://www.trustpilot.com/review/decoy.com\",\"sameAs\":[\"https://decoy.com/\"],"
+            + "\"aggregateRating\":{\"@type\":\"AggregateRating\",\"ratingValue\":\"1.2\",\"reviewCount\":\"7\"}}]}"
+            + "</script>";
+        int head = page.indexOf("<head>") + "<head>".length();
+        byte[] html = (page.substring(0, head) + decoy + page.substring(head)).getBytes(StandardCharsets.UTF_8);
+
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor(DOMAIN);
+        feedInChunks(extractor, html, 7);
+        assertEquals(Optional.of(new ReviewDto(1274, 4.9)), extractor.extract());
+
+        StructuredDataReviewExtractor decoyExtractor = new StructuredDataReviewExtractor("www.decoy.com");
+        feedInChunks(decoyExtractor, html, 7);
+        assertEquals(Optional.of(new ReviewDto(7, 1.2)), decoyExtractor.extract());
+    }
+
+    @Test
+    void extractWithoutBusinessOfDomain() throws IOException {
+        byte[] html = readPage("/mockwebserver/successfulWithValues.html");
+
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor("other.com");
+        int bytesFed = feedInChunks(extractor, html, 4096);
+
+        assertFalse(extractor.extract().isPresent());
+        assertEquals(html.length, bytesFed);
+    }
+
+    @Test
+    void extractSkipsMalformedBlocks() {
+        String html = "<script type=\"application/ld+json\">{\"@type\":\"Organization\",</script>"
+            + "<script type=\"application/ld+json\">{\"@type\":\"Organization\",\"url\":\"https://example.com\","
+            + "\"aggregateRating\":{\"ratingValue\":\"x\",\"reviewCount\":\"12\"}}</script>"
+            + "<script type=\"application/ld+json\">[{\"@type\":[\"Organization\"],\"url\":\"https://example.com\","
+            + "\"aggregateRating\":{\"@type\":\"AggregateRating\",\"ratingValue\":3,\"reviewCount\":12}}]</script>";
+
+        StructuredDataReviewExtractor extractor = new StructuredDataReviewExtractor("example.com");
+        feedInChunks(extractor, html.getBytes(StandardCharsets.UTF_8), 3);
+
+        assertEquals(Optional.of(new ReviewDto(12, 3.0)), extractor.extract());
+    }
+
+    private int feedInChunks(StructuredDataReviewExtractor extractor, byte[] html, int chunkSize) {
+        for (int offset = 0; offset < html.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, html.length - offset);
+            if (extractor.feed(ByteBuffer.wrap(html, offset, length))) {
+                return offset + length;
+            }
+        }
+        return html.length;
+    }
+
+    private byte[] readPage(String path) throws IOException {
+        return IOUtils.toByteArray(requireNonNull(this.getClass().getResourceAsStream(path)));
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.belnarto.trustpilotscraper.scraper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class UpstreamRateLimiterTest {
+
+    @Test
+    void requestsAreSpacedByRate() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(null, 10, 1, 10, 10, 2000, 1000, false, 0);
+
+        long start = System.nanoTime();
+        StepVerifier.create(Flux.range(0, 4).flatMap(i -> limiter.execute(() -> Mono.just(i))))
+            .expectNextCount(4)
+            .verifyComplete();
+
+        // one request goes with the burst, the others wait 100 ms each
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(250)) >= 0);
+        assertEquals(4, limiter.getAcquiredCount());
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    void inFlightRequestsAreLimited() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(null, 1000, 100, 2, 10, 2000, 1000, false, 0);
+        Sinks.Empty<Void> response = Sinks.empty();
+        AtomicInteger started = new AtomicInteger();
+
+        Flux<Void> calls = Flux.range(0, 5)
+            .flatMap(i -> limiter.execute(() -> {
+                started.incrementAndGet();
+                return response.asMono();
+            }));
+
+        StepVerifier.create(calls)
+            .then(() -> {
+                assertEquals(2, started.get());
+                assertEquals(2, limiter.getInFlight());
+                assertEquals(3, limiter.getQueueSize());
+                response.tryEmitEmpty();
+            })
+            .verifyComplete();
+
+        assertEquals(5, started.get());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void requestIsRejectedWhenQueueIsFull() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(null, 1000, 100, 1, 1, 2000, 1000, false, 0);
+        Sinks.Empty<Void> response = Sinks.empty();
+
+        limiter.execute(response::asMono).subscribe();
+
+        StepVerifier.create(limiter.execute(() -> Mono.just(1)))
+            .expectError(ScrapingUnavailableException.class)
+            .verify();
+        assertEquals(1, limiter.getRejectedCount());
+
+        response.tryEmitEmpty();
+    }
+
+    @Test
+    void requestIsRejectedWhenWaitingTooLong() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(null, 1000, 100, 10, 10, 100, 1000, false, 0);
+        limiter.pause(Duration.ofSeconds(1));
+
+        StepVerifier.create(limiter.execute(() -> Mono.just(1)))
+            .expectError(ScrapingUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    void requestsAreResumedAfterPause() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(null, 1000, 100, 10, 10, 2000, 1000, false, 0);
+        limiter.pause(Duration.ofMillis(300));
+
+        long start = System.nanoTime();
+        StepVerifier.create(limiter.execute(() -> Mono.just(1)))
+            .expectNext(1)
+            .verifyComplete();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(250)) >= 0);
+    }
+
+    @Test
+    void slotIsGivenBackWhileWaitingForFleetPermit() {
+        ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        doReturn(Flux.just(300L), Flux.just(0L)).when(redisTemplate).execute(any(), anyList(), anyList());
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(redisTemplate, 1000, 100, 1, 10, 2000, 1000, true, 10);
+
+        long start = System.nanoTime();
+        StepVerifier.create(limiter.execute(() -> Mono.just(1)))
+            .then(() -> {
+                assertEquals(0, limiter.getInFlight());
+                assertEquals(1, limiter.getQueueSize());
+            })
+            .expectNext(1)
+            .verifyComplete();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(250)) >= 0);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void requestIsRejectedWhenWaitingTooLongForFleetPermit() {
+        ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        doReturn(Flux.just(5000L)).when(redisTemplate).execute(any(), anyList(), anyList());
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(redisTemplate, 1000, 100, 1, 10, 200, 1000, true, 10);
+        AtomicInteger started = new AtomicInteger();
+
+        StepVerifier.create(limiter.execute(() -> Mono.fromRunnable(started::incrementAndGet)))
+            .expectError(ScrapingUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+
+        assertEquals(0, started.get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+}
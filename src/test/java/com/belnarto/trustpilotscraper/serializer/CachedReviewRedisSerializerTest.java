@@ -0,0 +1,118 @@
+package com.belnarto.trustpilotscraper.serializer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class CachedReviewRedisSerializerTest {
+
+    private final Jackson2JsonRedisSerializer<CachedReview> jsonSerializer = newJsonSerializer();
+
+    private final CachedReviewRedisSerializer binarySerializer =
+        new CachedReviewRedisSerializer(RedisValueFormat.BINARY, jsonSerializer);
+
+    @Test
+    void binaryRoundTrip() {
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L);
+
+        byte[] bytes = binarySerializer.serialize(review);
+
+        assertEquals(34, bytes.length);
+        assertEquals(review, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void binaryRoundTripWithResponse() {
+        byte[] response = "{\"reviewsCount\":1274,\"rating\":4.9}".getBytes(StandardCharsets.UTF_8);
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L, response);
+
+        assertEquals(review, binarySerializer.deserialize(binarySerializer.serialize(review)));
+    }
+
+    @Test
+    void binaryRoundTripWithValidators() {
+        byte[] response = "{\"reviewsCount\":1274,\"rating\":4.9}".getBytes(StandardCharsets.UTF_8);
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L, response,
+            "W/\"33a64df5\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+
+        assertEquals(review, binarySerializer.deserialize(binarySerializer.serialize(review)));
+    }
+
+    @Test
+    void secondVersionIsStillRead() {
+        byte[] response = "{\"reviewsCount\":1274,\"rating\":4.9}".getBytes(StandardCharsets.UTF_8);
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L, response);
+
+        byte[] bytes = binarySerializer.serialize(review);
+        bytes = Arrays.copyOf(bytes, bytes.length - 2 * Integer.BYTES);
+        bytes[1] = 2;
+
+        assertEquals(review, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void firstVersionIsStillRead() {
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L);
+
+        byte[] bytes = Arrays.copyOf(binarySerializer.serialize(review), 22);
+        bytes[1] = 1;
+
+        assertEquals(review, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void jsonEntriesAreStillRead() {
+        byte[] json = "{\"reviewsCount\":1274,\"rating\":4.9,\"cachedAt\":1665000000000}"
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] legacyJson = "{\"reviewsCount\":1274,\"rating\":4.9}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new CachedReview(1274, 4.9, 1665000000000L), binarySerializer.deserialize(json));
+        assertEquals(new CachedReview(1274, 4.9, 0), binarySerializer.deserialize(legacyJson));
+    }
+
+    @Test
+    void jsonIsWrittenWhenConfigured() {
+        CachedReviewRedisSerializer serializer = new CachedReviewRedisSerializer(RedisValueFormat.JSON, jsonSerializer);
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L);
+
+        byte[] bytes = serializer.serialize(review);
+
+        assertEquals('{', bytes[0]);
+        assertEquals(review, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void unknownTrailingFieldsAreIgnored() {
+        CachedReview review = new CachedReview(1274, 4.9, 1665000000000L);
+
+        byte[] bytes = Arrays.copyOf(binarySerializer.serialize(review), 48);
+        bytes[1] = 4;
+
+        assertEquals(review, binarySerializer.deserialize(bytes));
+    }
+
+    @Test
+    void truncatedEntryIsRejected() {
+
+        byte[] bytes = Arrays.copyOf(binarySerializer.serialize(new CachedReview(1274, 4.9, 1665000000000L)), 10);
+
+        assertThrows(SerializationException.class, () -> binarySerializer.deserialize(bytes));
+    }
+
+    private static Jackson2JsonRedisSerializer<CachedReview> newJsonSerializer() {
+        Jackson2JsonRedisSerializer<CachedReview> serializer = new Jackson2JsonRedisSerializer<>(CachedReview.class);
+        serializer.setObjectMapper(Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule())
+            .build());
+        return serializer;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import redis.embedded.RedisServer;
+
+class HotDomainTrackerTest {
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    @BeforeAll
+    static void beforeAll() {
+        redisServer = RedisServer.builder()
+            .setting("maxmemory 128M") // https://github.com/kstyrc/embedded-redis/issues/51
+            .build();
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void sketchNeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j <= i % 10; j++) {
+                sketch.increment("domain" + i);
+            }
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(sketch.estimate("domain" + i) >= i % 10 + 1);
+        }
+    }
+
+    @Test
+    void mostRequestedDomainsAreKeptAmongManyRareOnes() {
+        HotDomainTracker tracker = new HotDomainTracker(new ReactiveStringRedisTemplate(connectionFactory),
+            3, 1024, 4, 60);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.recordAccess("rare" + i);
+            if (i % 10 == 0) {
+                tracker.recordAccess("hot1");
+            }
+            if (i % 20 == 0) {
+                tracker.recordAccess("hot2");
+            }
+            if (i % 40 == 0) {
+                tracker.recordAccess("hot3");
+            }
+        }
+
+        assertEquals(List.of("hot1", "hot2", "hot3"), tracker.getLocalTopDomains());
+    }
+
+    @Test
+    void hotDomainsAreSharedAcrossInstances() {
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        HotDomainTracker first = new HotDomainTracker(template, 2, 1024, 4, 60);
+        HotDomainTracker second = new HotDomainTracker(template, 2, 1024, 4, 60);
+        for (int i = 0; i < 3; i++) {
+            first.recordAccess("sharedDomain");
+            second.recordAccess("sharedDomain");
+        }
+        first.recordAccess("firstDomain");
+        first.recordAccess("firstDomain");
+        second.recordAccess("secondDomain");
+
+        first.flush().block();
+        second.flush().block();
+
+        assertTrue(first.getLocalTopDomains().isEmpty());
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> List.of("sharedDomain", "firstDomain").equals(second.getHotDomains().block()));
+    }
+
+}
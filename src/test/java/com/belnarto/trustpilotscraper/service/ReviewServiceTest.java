@@ -1,14 +1,24 @@
 package com.belnarto.trustpilotscraper.service;
 
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.belnarto.trustpilotscraper.cache.CachedReview;
 import com.belnarto.trustpilotscraper.dto.ReviewDto;
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
 import com.belnarto.trustpilotscraper.scraper.ReviewScraper;
+import com.belnarto.trustpilotscraper.scraper.ScrapedReview;
+import com.belnarto.trustpilotscraper.scraper.UpstreamValidators;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -52,8 +62,8 @@ class ReviewServiceTest {
         int reviewsCount = 100;
         double rating = 4.3;
 
-        when(reviewScraper.scrapForReviewByDomain(any()))
-            .thenReturn(Mono.just(new ReviewDto(reviewsCount, rating)));
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(scraped(new ReviewDto(reviewsCount, rating)));
 
         Mono<ReviewDto> review = reviewService.getReviewByDomain("anyDomain1");
         StepVerifier.create(review)
@@ -65,7 +75,7 @@ class ReviewServiceTest {
             .expectNextMatches(r -> r.getReviewsCount() == reviewsCount && r.getRating() == rating)
             .verifyComplete();
 
-        verify(reviewScraper, times(2)).scrapForReviewByDomain(any());
+        verify(reviewScraper, times(2)).scrapForReviewByDomain(any(), any());
     }
 
     @Test
@@ -74,8 +84,8 @@ class ReviewServiceTest {
         double rating = 4.3;
         String domain = "anyDomain";
 
-        when(reviewScraper.scrapForReviewByDomain(any()))
-            .thenReturn(Mono.just(new ReviewDto(reviewsCount, rating)));
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(scraped(new ReviewDto(reviewsCount, rating)));
 
         Mono<ReviewDto> review = reviewService.getReviewByDomain(domain);
         StepVerifier.create(review)
@@ -87,7 +97,117 @@ class ReviewServiceTest {
             .expectNextMatches(r -> r.getReviewsCount() == reviewsCount && r.getRating() == rating)
             .verifyComplete();
 
-        verify(reviewScraper, times(1)).scrapForReviewByDomain(any());
+        verify(reviewScraper, times(1)).scrapForReviewByDomain(any(), any());
+    }
+
+    @Test
+    void getReviewByDomainConcurrentMissesCoalesced() {
+        int reviewsCount = 100;
+        double rating = 4.3;
+        String domain = "anyDomainConcurrent";
+
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(Mono.delay(Duration.ofMillis(200))
+                .thenReturn(ScrapedReview.of(new ReviewDto(reviewsCount, rating), UpstreamValidators.NONE)));
+
+        Mono<ReviewDto> first = reviewService.getReviewByDomain(domain);
+        Mono<ReviewDto> second = reviewService.getReviewByDomain(domain);
+        StepVerifier.create(Mono.zip(first, second))
+            .expectNextMatches(t -> t.getT1().equals(t.getT2()) && t.getT1().getReviewsCount() == reviewsCount)
+            .verifyComplete();
+
+        verify(reviewScraper, times(1)).scrapForReviewByDomain(any(), any());
+    }
+
+    @Test
+    void getReviewByDomainNotFoundFromFailureCache() {
+        String domain = "anyDomainNotFound";
+
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(Mono.error(new ReviewNotFoundException("Review for domain: " + domain + " was not found")));
+
+        Mono<ReviewDto> review = reviewService.getReviewByDomain(domain);
+        StepVerifier.create(review)
+            .expectError(ReviewNotFoundException.class)
+            .verify();
+
+        review = reviewService.getReviewByDomain(domain);
+        StepVerifier.create(review)
+            .expectErrorMatches(e -> e instanceof ReviewNotFoundException && e.getMessage().contains(domain))
+            .verify();
+
+        verify(reviewScraper, times(1)).scrapForReviewByDomain(any(), any());
+    }
+
+    @Test
+    void getReviewsByDomainsFromCacheAndScraper() {
+        ReviewDto cachedReview = new ReviewDto(100, 4.3);
+        ReviewDto scrapedReview = new ReviewDto(101, 4.4);
+
+        when(reviewScraper.scrapForReviewByDomain(eq("batchCached"), any()))
+            .thenReturn(scraped(cachedReview));
+        when(reviewScraper.scrapForReviewByDomain(eq("batchScraped"), any()))
+            .thenReturn(scraped(scrapedReview));
+        when(reviewScraper.scrapForReviewByDomain(eq("batchNotFound"), any()))
+            .thenReturn(Mono.error(new ReviewNotFoundException("Review for domain: batchNotFound was not found")));
+
+        StepVerifier.create(reviewService.getReviewByDomain("batchCached"))
+            .expectNext(cachedReview)
+            .verifyComplete();
+
+        List<DomainReview> domainReviews = reviewService
+            .getReviewsByDomains(List.of("batchCached", "batchScraped", "batchNotFound", "batchScraped", ""))
+            .collectList()
+            .block();
+
+        Map<String, DomainReview> byDomain = domainReviews.stream()
+            .collect(Collectors.toMap(DomainReview::getDomain, domainReview -> domainReview));
+        assertEquals(3, domainReviews.size());
+        assertEquals(cachedReview, byDomain.get("batchCached").getReview());
+        assertEquals(scrapedReview, byDomain.get("batchScraped").getReview());
+        assertEquals(ReviewNotFoundException.class, byDomain.get("batchNotFound").getError().getClass());
+
+        verify(reviewScraper, times(3)).scrapForReviewByDomain(any(), any());
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    void getReviewByDomainStaleWhileRevalidate() {
+        String domain = "anyDomainStale";
+        ReviewDto staleReview = new ReviewDto(100, 4.3);
+        ReviewDto freshReview = new ReviewDto(101, 4.4);
+
+        long cacheSoftTtlSecInitial = (long) ReflectionTestUtils.getField(reviewService, "cacheSoftTtlSec");
+        long cacheRefreshAheadSecInitial = (long) ReflectionTestUtils.getField(reviewService, "cacheRefreshAheadSec");
+        ReflectionTestUtils.setField(reviewService, "cacheSoftTtlSec", 1);
+        ReflectionTestUtils.setField(reviewService, "cacheRefreshAheadSec", 0);
+
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(scraped(staleReview), scraped(freshReview));
+
+        StepVerifier.create(reviewService.getReviewByDomain(domain))
+            .expectNext(staleReview)
+            .verifyComplete();
+
+        await()
+            .pollDelay(Duration.ofMillis(1001))
+            .until(() -> {
+                StepVerifier.create(reviewService.getReviewByDomain(domain))
+                    .expectNext(staleReview)
+                    .verifyComplete();
+                return true;
+            });
+
+        await()
+            .atMost(Duration.ofSeconds(1))
+            .untilAsserted(() -> StepVerifier.create(reviewService.getReviewByDomain(domain))
+                .expectNext(freshReview)
+                .verifyComplete());
+
+        verify(reviewScraper, times(2)).scrapForReviewByDomain(any(), any());
+
+        ReflectionTestUtils.setField(reviewService, "cacheSoftTtlSec", cacheSoftTtlSecInitial);
+        ReflectionTestUtils.setField(reviewService, "cacheRefreshAheadSec", cacheRefreshAheadSecInitial);
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -100,8 +220,8 @@ class ReviewServiceTest {
         long cacheTtlSecInitial = (long) ReflectionTestUtils.getField(reviewService, "cacheTtlSec");
         ReflectionTestUtils.setField(reviewService, "cacheTtlSec", 1);
 
-        when(reviewScraper.scrapForReviewByDomain(any()))
-            .thenReturn(Mono.just(new ReviewDto(reviewsCount, rating)));
+        when(reviewScraper.scrapForReviewByDomain(any(), any()))
+            .thenReturn(scraped(new ReviewDto(reviewsCount, rating)));
 
         Mono<ReviewDto> review = reviewService.getReviewByDomain(domain);
         StepVerifier.create(review)
@@ -118,9 +238,70 @@ class ReviewServiceTest {
                 return true;
             });
 
-        verify(reviewScraper, times(2)).scrapForReviewByDomain(any());
+        verify(reviewScraper, times(2)).scrapForReviewByDomain(any(), any());
 
         ReflectionTestUtils.setField(reviewService, "cacheTtlSec", cacheTtlSecInitial);
     }
 
-}
\ No newline at end of file
+    @Test
+    void restoredReviewServedWithoutScraping() {
+        long now = System.currentTimeMillis();
+        CachedReview freshReview = new CachedReview(100, 4.3, now - 1000);
+        CachedReview expiredReview = new CachedReview(101, 4.4, now - Duration.ofDays(1).toMillis());
+
+        StepVerifier.create(reviewService.restore("anyDomainRestored", freshReview))
+            .expectNext(true)
+            .verifyComplete();
+        StepVerifier.create(reviewService.restore("anyDomainRestored", freshReview))
+            .expectNext(false)
+            .verifyComplete();
+        StepVerifier.create(reviewService.restore("anyDomainRestoredExpired", expiredReview))
+            .expectNext(false)
+            .verifyComplete();
+
+        StepVerifier.create(reviewService.warmUp("anyDomainRestored"))
+            .expectNext(freshReview)
+            .verifyComplete();
+
+        verify(reviewScraper, times(0)).scrapForReviewByDomain(any(), any());
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    void staleReviewRevalidatedWhenNotModified() {
+        String domain = "anyDomainNotModified";
+        ReviewDto review = new ReviewDto(100, 4.3);
+        UpstreamValidators validators = new UpstreamValidators("\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+
+        long cacheSoftTtlSecInitial = (long) ReflectionTestUtils.getField(reviewService, "cacheSoftTtlSec");
+        long cacheRefreshAheadSecInitial = (long) ReflectionTestUtils.getField(reviewService, "cacheRefreshAheadSec");
+        ReflectionTestUtils.setField(reviewService, "cacheSoftTtlSec", 1);
+        ReflectionTestUtils.setField(reviewService, "cacheRefreshAheadSec", 0);
+
+        when(reviewScraper.scrapForReviewByDomain(eq(domain), any()))
+            .thenReturn(Mono.just(ScrapedReview.of(review, validators)),
+                Mono.just(ScrapedReview.notModified(validators)));
+
+        CachedReview scraped = reviewService.getCachedReviewByDomain(domain).block();
+
+        await()
+            .pollDelay(Duration.ofMillis(1001))
+            .atMost(Duration.ofSeconds(3))
+            .until(() -> reviewService.getCachedReviewByDomain(domain).block().getCachedAt() > scraped.getCachedAt());
+
+        CachedReview revalidated = reviewService.getCachedReviewByDomain(domain).block();
+        assertEquals(review, revalidated.toReviewDto());
+        assertEquals(validators, revalidated.getValidators());
+        assertArrayEquals(scraped.getResponse(), revalidated.getResponse());
+        verify(reviewScraper).scrapForReviewByDomain(domain, UpstreamValidators.NONE);
+        verify(reviewScraper).scrapForReviewByDomain(domain, validators);
+
+        ReflectionTestUtils.setField(reviewService, "cacheSoftTtlSec", cacheSoftTtlSecInitial);
+        ReflectionTestUtils.setField(reviewService, "cacheRefreshAheadSec", cacheRefreshAheadSecInitial);
+    }
+
+    private static Mono<ScrapedReview> scraped(ReviewDto review) {
+        return Mono.just(ScrapedReview.of(review, UpstreamValidators.NONE));
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.belnarto.trustpilotscraper.exception.ScrapingOverloadedException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class ScrapAdmissionTest {
+
+    @Test
+    void excessCallsAreQueuedThenShed() {
+        ScrapAdmission admission = new ScrapAdmission(true, 2, 1, 10, 1, 2000, 1000, 0.5, 3);
+        Sinks.Empty<Void> response = Sinks.empty();
+        AtomicInteger started = new AtomicInteger();
+
+        Flux<Void> calls = Flux.range(0, 3)
+            .flatMap(i -> admission.execute(() -> {
+                started.incrementAndGet();
+                return response.asMono();
+            }));
+
+        StepVerifier.create(calls)
+            .then(() -> {
+                assertEquals(2, started.get());
+                assertEquals(1, admission.getQueueSize());
+
+                StepVerifier.create(admission.execute(Mono::empty))
+                    .expectErrorSatisfies(e -> {
+                        assertTrue(e instanceof ScrapingOverloadedException);
+                        assertEquals(Duration.ofSeconds(3), ((ScrapingOverloadedException) e).getRetryAfter());
+                    })
+                    .verify();
+
+                response.tryEmitEmpty();
+            })
+            .verifyComplete();
+
+        assertEquals(3, started.get());
+        assertEquals(0, admission.getInFlight());
+        assertEquals(3, admission.getAcceptedCount());
+        assertEquals(1, admission.getQueuedCount());
+        assertEquals(1, admission.getShedCount());
+    }
+
+    @Test
+    void queuedCallIsShedAfterMaxWait() {
+        ScrapAdmission admission = new ScrapAdmission(true, 1, 1, 10, 10, 100, 1000, 0.5, 1);
+
+        admission.execute(Mono::never).subscribe();
+
+        StepVerifier.create(admission.execute(() -> Mono.just("admitted")))
+            .expectError(ScrapingOverloadedException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(0, admission.getQueueSize());
+        assertEquals(1, admission.getShedCount());
+    }
+
+    @Test
+    void limitGrowsWhileCallsAreFast() {
+        ScrapAdmission admission = new ScrapAdmission(true, 2, 1, 10, 10, 2000, 1000, 0.5, 1);
+
+        StepVerifier.create(Flux.range(0, 20).flatMap(i -> admission.execute(() -> Mono.just(i)), 2))
+            .expectNextCount(20)
+            .verifyComplete();
+
+        assertTrue(admission.getLimit() > 2);
+    }
+
+    @Test
+    void limitShrinksWhenUpstreamIsUnavailable() {
+        ScrapAdmission admission = new ScrapAdmission(true, 8, 2, 10, 10, 2000, 0, 0.5, 1);
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(admission.execute(() -> Mono.error(new ScrapingUnavailableException("unavailable"))))
+                .verifyError(ScrapingUnavailableException.class);
+        }
+
+        assertEquals(2, admission.getLimit());
+    }
+
+}
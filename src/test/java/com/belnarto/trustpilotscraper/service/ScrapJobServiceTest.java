@@ -0,0 +1,165 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.belnarto.trustpilotscraper.cache.CachedReview;
+import com.belnarto.trustpilotscraper.dto.ScrapJobDto;
+import com.belnarto.trustpilotscraper.exception.ReviewNotFoundException;
+import com.belnarto.trustpilotscraper.exception.ScrapingUnavailableException;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.redis.connection.stream.StreamInfo.XInfoConsumer;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs against a real Redis, as Redis Streams are not available in the embedded Redis used by the other tests.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+    "trustpilot.jobs.enabled=true",
+    "trustpilot.jobs.poll-timeout-ms=100",
+    "trustpilot.jobs.claim-interval-sec=1",
+    "trustpilot.jobs.claim-min-idle-sec=1",
+    "trustpilot.jobs.max-deliveries=2",
+    "trustpilot.jobs.claim-batch-size=2",
+    "trustpilot.jobs.consumer-name=worker-1"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class ScrapJobServiceTest {
+
+    @Container
+    static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:6.2-alpine"))
+        .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry r) {
+        r.add("spring.redis.host", redis::getHost);
+        r.add("spring.redis.port", () -> redis.getMappedPort(6379));
+    }
+
+    @Autowired
+    ScrapJobService scrapJobService;
+
+    @Autowired
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @MockBean
+    ReviewService reviewService;
+
+    @AfterEach
+    void allEntriesAreAcknowledged() {
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> reactiveStringRedisTemplate.opsForStream().size("scrap-jobs").block() == 0);
+    }
+
+    @Test
+    void jobIsProcessedAndResultsArePaged() {
+        when(reviewService.warmUp("foundDomain"))
+            .thenReturn(Mono.just(new CachedReview(15, 4.5, System.currentTimeMillis())));
+        when(reviewService.warmUp("missingDomain"))
+            .thenReturn(Mono.error(new ReviewNotFoundException("Review for domain: missingDomain was not found")));
+
+        ScrapJobDto submitted = scrapJobService.submit(List.of("foundDomain", " ", "missingDomain", "foundDomain"))
+            .block();
+        assertEquals(2, submitted.getTotal());
+
+        ScrapJobDto job = awaitDone(submitted.getId());
+        assertEquals(1, job.getSucceeded());
+        assertEquals(1, job.getFailed());
+
+        List<String> firstPage = scrapJobService.getResults(job.getId(), 0, 1).collectList().block();
+        List<String> secondPage = scrapJobService.getResults(job.getId(), 1, 10).collectList().block();
+        assertEquals(1, firstPage.size());
+        assertEquals(1, secondPage.size());
+        String results = firstPage.get(0) + secondPage.get(0);
+        assertTrue(results.contains("{\"domain\":\"foundDomain\",\"status\":200,\"review\":{\"reviewsCount\":15"));
+        assertTrue(results.contains("{\"domain\":\"missingDomain\",\"status\":404"));
+    }
+
+    @Test
+    void transientFailureIsClaimedAgain() {
+        when(reviewService.warmUp("flakyDomain"))
+            .thenReturn(Mono.error(new ScrapingUnavailableException("Trustpilot is unavailable")))
+            .thenReturn(Mono.just(new CachedReview(15, 4.5, System.currentTimeMillis())));
+
+        ScrapJobDto job = awaitDone(scrapJobService.submit(List.of("flakyDomain")).block().getId());
+
+        assertEquals(1, job.getSucceeded());
+        verify(reviewService, times(2)).warmUp("flakyDomain");
+    }
+
+    @Test
+    void entryIsGivenUpAfterMaxDeliveries() {
+        when(reviewService.warmUp("downDomain"))
+            .thenReturn(Mono.error(new ScrapingUnavailableException("Trustpilot is unavailable")));
+
+        ScrapJobDto job = awaitDone(scrapJobService.submit(List.of("downDomain")).block().getId());
+
+        assertEquals(1, job.getFailed());
+        assertTrue(scrapJobService.getResults(job.getId(), 0, 1).blockFirst().contains("\"status\":503"));
+        verify(reviewService, times(2)).warmUp("downDomain");
+    }
+
+    @Test
+    void pendingEntriesArePagedThrough() {
+        List<String> domains = List.of("flakyDomain1", "flakyDomain2", "flakyDomain3", "flakyDomain4", "flakyDomain5");
+        for (String domain : domains) {
+            when(reviewService.warmUp(domain))
+                .thenReturn(Mono.error(new ScrapingUnavailableException("Trustpilot is unavailable")))
+                .thenReturn(Mono.just(new CachedReview(15, 4.5, System.currentTimeMillis())));
+        }
+
+        ScrapJobDto job = awaitDone(scrapJobService.submit(domains).block().getId());
+
+        assertEquals(domains.size(), job.getSucceeded());
+        for (String domain : domains) {
+            verify(reviewService, times(2)).warmUp(domain);
+        }
+    }
+
+    @Test
+    void consumerNameIsStable() {
+        scrapJobService.submit(List.of("anyDomain")).block();
+
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> reactiveStringRedisTemplate.opsForStream().consumers("scrap-jobs", "scrap-job-workers")
+                .map(XInfoConsumer::consumerName)
+                .collectList()
+                .block()
+                .equals(List.of("worker-1")));
+    }
+
+    @Test
+    void missingJobIsEmpty() {
+        assertTrue(scrapJobService.getJob("missingJob").blockOptional().isEmpty());
+    }
+
+    private ScrapJobDto awaitDone(String id) {
+        await()
+            .atMost(Duration.ofSeconds(15))
+            .until(() -> scrapJobService.getJob(id).block().isDone());
+        return scrapJobService.getJob(id).block();
+    }
+
+}
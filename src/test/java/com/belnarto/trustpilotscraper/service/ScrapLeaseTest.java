@@ -0,0 +1,99 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import redis.embedded.RedisServer;
+
+class ScrapLeaseTest {
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    @BeforeAll
+    static void beforeAll() {
+        redisServer = RedisServer.builder()
+            .setting("maxmemory 128M") // https://github.com/kstyrc/embedded-redis/issues/51
+            .build();
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Test
+    void otherInstanceWaitsForLeaseHolder() {
+        ScrapLease holder = newLease(10_000);
+        ScrapLease other = newLease(10_000);
+        Sinks.One<String> scraped = Sinks.one();
+        AtomicInteger otherScraped = new AtomicInteger();
+        AtomicReference<String> holderResult = new AtomicReference<>();
+
+        holder.execute("leasedDomain", scraped::asMono, () -> Mono.just("unexpected")).subscribe(holderResult::set);
+        await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> holder.getAcquiredCount() == 1);
+
+        StepVerifier.create(other.execute("leasedDomain",
+                () -> Mono.fromCallable(otherScraped::incrementAndGet).thenReturn("scraped twice"),
+                () -> Mono.just("read from redis")))
+            .then(() -> scraped.tryEmitValue("scraped"))
+            .expectNext("read from redis")
+            .verifyComplete();
+
+        assertEquals("scraped", holderResult.get());
+        assertEquals(0, otherScraped.get());
+        assertEquals(1, holder.getAcquiredCount());
+        assertEquals(1, other.getWaitedCount());
+
+        StepVerifier.create(other.execute("leasedDomain", () -> Mono.just("released"), Mono::empty))
+            .expectNext("released")
+            .verifyComplete();
+
+        holder.unsubscribeFromCompletions();
+        other.unsubscribeFromCompletions();
+    }
+
+    @Test
+    void otherInstanceStopsWaitingWhenLeaseExpires() {
+        ScrapLease holder = newLease(500);
+        ScrapLease other = newLease(500);
+
+        holder.execute("expiringDomain", Mono::never, Mono::empty).subscribe();
+
+        long start = System.nanoTime();
+        StepVerifier.create(other.execute("expiringDomain", Mono::empty, () -> Mono.just("scraped after expiry")))
+            .expectNext("scraped after expiry")
+            .verifyComplete();
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(400)) >= 0);
+
+        holder.unsubscribeFromCompletions();
+        other.unsubscribeFromCompletions();
+    }
+
+    private static ScrapLease newLease(long ttlMs) {
+        ScrapLease lease = new ScrapLease(new ReactiveStringRedisTemplate(connectionFactory), true, ttlMs);
+        lease.subscribeToCompletions();
+        return lease;
+    }
+
+}
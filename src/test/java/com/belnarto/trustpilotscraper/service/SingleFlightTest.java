@@ -0,0 +1,74 @@
+package com.belnarto.trustpilotscraper.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsShareOneExecution() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        Sinks.One<Integer> sink = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+
+        Mono<Integer> first = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return sink.asMono();
+        });
+        Mono<Integer> second = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return sink.asMono();
+        });
+
+        StepVerifier.create(Mono.zip(first, second))
+            .then(() -> sink.tryEmitValue(42))
+            .expectNextMatches(t -> t.getT1() == 42 && t.getT2() == 42)
+            .verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getOriginatedCount());
+        assertEquals(1, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void entryIsRemovedAfterError() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return Mono.error(new IllegalStateException());
+                }))
+                .expectError(IllegalStateException.class)
+                .verify();
+        }
+
+        assertEquals(2, calls.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void entryIsRemovedWhenAllWaitersCancel() {
+        SingleFlight<String, Long> singleFlight = new SingleFlight<>();
+
+        Disposable first = singleFlight.execute("key", () -> Mono.delay(Duration.ofMinutes(1))).subscribe();
+        Disposable second = singleFlight.execute("key", () -> Mono.delay(Duration.ofMinutes(1))).subscribe();
+        assertEquals(1, singleFlight.getInFlightCount());
+
+        first.dispose();
+        assertEquals(1, singleFlight.getInFlightCount());
+
+        second.dispose();
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+}